@@ -0,0 +1,69 @@
+package com.bloxbean.faucet.relay;
+
+import avm.Address;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bloom filter of 32-byte addresses. {@link #mightContain(Address)} never returns false for an added address.
+ */
+public class AddressBloomFilter {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions expected no of addresses
+     * @param falsePositiveRate desired false positive rate at expectedInsertions, e.g. 0.01
+     */
+    public AddressBloomFilter(int expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw new IllegalArgumentException("Invalid bloom filter parameters");
+
+        long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new long[(int) ((m + Long.SIZE - 1) / Long.SIZE)];
+        this.bitCount = (long) bits.length * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    public void add(Address address) {
+        long[] hashes = hashes(address);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(hashes, i);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(Address address) {
+        long[] hashes = hashes(address);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(hashes, i);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    //Double hashing: i-th hash is h1 + i * h2
+    private long index(long[] hashes, int i) {
+        return Long.remainderUnsigned(hashes[0] + i * hashes[1], bitCount);
+    }
+
+    //Both hashes depend on all 32 bytes. Addresses often differ in a few bytes only, and a shared h1 puts the first
+    //index of all of them on the same bit.
+    private static long[] hashes(Address address) {
+        ByteBuffer buffer = ByteBuffer.wrap(address.toByteArray());
+        long h1 = mix(buffer.getLong() ^ mix(buffer.getLong(8) ^ mix(buffer.getLong(16) ^ mix(buffer.getLong(24)))));
+        long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+        return new long[]{h1, h2};
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
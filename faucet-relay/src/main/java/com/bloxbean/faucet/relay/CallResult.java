@@ -0,0 +1,48 @@
+package com.bloxbean.faucet.relay;
+
+/**
+ * Result of a transaction sent through {@link ChainClient}
+ */
+public class CallResult {
+    private final boolean success;
+    private final byte[] output;
+    private final long energyUsed;
+    private final String error;
+
+    private CallResult(boolean success, byte[] output, long energyUsed, String error) {
+        this.success = success;
+        this.output = output;
+        this.energyUsed = energyUsed;
+        this.error = error;
+    }
+
+    public static CallResult success(byte[] output, long energyUsed) {
+        return new CallResult(true, output, energyUsed, null);
+    }
+
+    public static CallResult failure(String error, long energyUsed) {
+        return new CallResult(false, null, energyUsed, error);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * @return ABI encoded return data. Null if the transaction failed.
+     */
+    public byte[] getOutput() {
+        return output;
+    }
+
+    public long getEnergyUsed() {
+        return energyUsed;
+    }
+
+    /**
+     * @return reason of failure. Null if the transaction was successful.
+     */
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,18 @@
+package com.bloxbean.faucet.relay;
+
+import avm.Address;
+
+/**
+ * Connection to the chain on which the faucet contract is deployed. Implementations hold the operator keys,
+ * sign the transactions and wait for their receipts.
+ */
+public interface ChainClient {
+
+    /**
+     * Send a transaction from an operator account to the faucet contract and wait for its receipt
+     * @param operator operator account which signs the transaction
+     * @param txData ABI encoded method call
+     * @return result of the transaction
+     */
+    CallResult call(Address operator, byte[] txData);
+}
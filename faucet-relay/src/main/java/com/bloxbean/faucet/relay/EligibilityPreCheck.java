@@ -0,0 +1,140 @@
+package com.bloxbean.faucet.relay;
+
+import avm.Address;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rejects requests which would fail the contract's checks before they are submitted. Combines a Bloom filter of all
+ * registered addresses with an exact LRU cache of recently active recipients' token buckets.
+ * A topup is rejected if the Bloom filter doesn't contain the address, or if the cached token bucket has no token
+ * even at the last block at which the request can still be included, i.e. inclusionBlocks after the current block.
+ * Requests are flushed on a timer and pipelined, so a token which refills within that horizon is enough.
+ * A registration is rejected if the address is in the cache.
+ * Addresses missing from the cache, or cached with an unknown token bucket, are passed on to the contract.
+ *
+ * The Bloom filter must know every registered address, so the pre-check has to be fed all logs since the contract was
+ * deployed, or warmed up from a {@link RecipientIndex} with {@link #warmUp(RecipientIndex)}.
+ */
+public class EligibilityPreCheck {
+    public static final int DEFAULT_CACHE_SIZE = 100_000;
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    //About 5 minutes of 10 second blocks: flush interval, pipelining and re-sends of dropped transactions
+    public static final long DEFAULT_INCLUSION_BLOCKS = 30;
+
+    public enum Result {
+        ACCEPTED,
+        NOT_REGISTERED,
+        ALREADY_REGISTERED,
+        COOLDOWN
+    }
+
+    private final TokenBucket rateLimit;
+    private final long inclusionBlocks;
+    private final AddressBloomFilter registered;
+    //Recipient -> packed token bucket, null if the recipient is registered but its bucket is unknown
+    private final Map<Address, Long> cooldowns;
+
+    private long currentBlock;
+
+    public EligibilityPreCheck(int capacity, long refillBlocks, int expectedRecipients) {
+        this(capacity, refillBlocks, DEFAULT_INCLUSION_BLOCKS, expectedRecipients, DEFAULT_FALSE_POSITIVE_RATE, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param capacity contract's rateLimitCapacity
+     * @param refillBlocks contract's rateLimitRefillBlocks
+     * @param inclusionBlocks maximum no of blocks after the current block until a request is included, at least 1
+     * @param expectedRecipients expected no of registered addresses, used to size the Bloom filter
+     * @param falsePositiveRate Bloom filter's false positive rate at expectedRecipients
+     * @param cacheSize maximum no of recipients in the cooldown cache
+     */
+    public EligibilityPreCheck(int capacity, long refillBlocks, long inclusionBlocks, int expectedRecipients,
+                               double falsePositiveRate, int cacheSize) {
+        if (inclusionBlocks < 1)
+            throw new IllegalArgumentException("inclusionBlocks should be at least 1");
+
+        this.rateLimit = new TokenBucket(capacity, refillBlocks);
+        this.inclusionBlocks = inclusionBlocks;
+        this.registered = new AddressBloomFilter(expectedRecipients, falsePositiveRate);
+        this.cooldowns = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Address, Long> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Load all recipients of an index, for example after restoring it from a checkpoint
+     * @param index
+     */
+    public synchronized void warmUp(RecipientIndex index) {
+        index.forEachRecipient((address, lastRequestBlockNo, tokenBucket, tokenBucketKnown) -> {
+            registered.add(address);
+            cooldowns.put(address, tokenBucketKnown ? tokenBucket : null);
+        });
+        currentBlock = Math.max(currentBlock, index.getLastProcessedBlock());
+    }
+
+    /**
+     * Apply the faucet logs of a block
+     * @param blockNumber
+     * @param logs logs of the block in the order they were published
+     */
+    public synchronized void applyBlock(long blockNumber, List<FaucetLog> logs) {
+        for (FaucetLog log : logs) {
+            String event = log.getEventName();
+            if ("AddressRegistered".equals(event)) {
+                //v2 has the address as the second topic, v1 as data
+                Address address = new Address(log.getTopics().size() > 1 ? log.getTopics().get(1) : log.getData());
+                registered.add(address);
+                cooldowns.put(address, rateLimit.full(blockNumber));
+            } else if ("TopUp".equals(event)) {
+                Address address = new Address(log.getTopics().get(1));
+                registered.add(address);
+
+                //Without the bucket before this topup, e.g. after its registration was evicted, the tokens left are unknown
+                Long tokenBucket = cooldowns.get(address);
+                cooldowns.put(address, tokenBucket != null ? rateLimit.consume(tokenBucket, blockNumber) : null);
+            }
+        }
+
+        currentBlock = Math.max(currentBlock, blockNumber);
+    }
+
+    /**
+     * Update the current block, if it is ahead of the last applied block
+     * @param blockNumber
+     */
+    public synchronized void setCurrentBlock(long blockNumber) {
+        currentBlock = Math.max(currentBlock, blockNumber);
+    }
+
+    /**
+     * Check a registration request
+     * @param address
+     * @return ACCEPTED or ALREADY_REGISTERED
+     */
+    public synchronized Result checkRegistration(Address address) {
+        return cooldowns.containsKey(address) ? Result.ALREADY_REGISTERED : Result.ACCEPTED;
+    }
+
+    /**
+     * Check a topup request against the state at the last block it can be included in
+     * @param address
+     * @return ACCEPTED, NOT_REGISTERED or COOLDOWN
+     */
+    public synchronized Result checkTopUp(Address address) {
+        if (!registered.mightContain(address))
+            return Result.NOT_REGISTERED;
+
+        Long tokenBucket = cooldowns.get(address);
+        if (tokenBucket != null && !rateLimit.hasToken(tokenBucket, currentBlock + inclusionBlocks))
+            return Result.COOLDOWN;
+
+        return Result.ACCEPTED;
+    }
+}
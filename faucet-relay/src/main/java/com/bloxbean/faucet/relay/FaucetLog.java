@@ -0,0 +1,46 @@
+package com.bloxbean.faucet.relay;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A log published by the faucet contract, as returned by the node
+ */
+public class FaucetLog {
+    private final long blockNumber;
+    private final List<byte[]> topics;
+    private final byte[] data;
+
+    public FaucetLog(long blockNumber, List<byte[]> topics, byte[] data) {
+        this.blockNumber = blockNumber;
+        this.topics = topics;
+        this.data = data;
+    }
+
+    public long getBlockNumber() {
+        return blockNumber;
+    }
+
+    public List<byte[]> getTopics() {
+        return topics;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return event name from the first topic without its zero padding, or null if there is no topic
+     */
+    public String getEventName() {
+        if (topics == null || topics.isEmpty())
+            return null;
+
+        byte[] topic = topics.get(0);
+        int length = topic.length;
+        while (length > 0 && topic[length - 1] == 0)
+            length--;
+
+        return new String(topic, 0, length, StandardCharsets.US_ASCII);
+    }
+}
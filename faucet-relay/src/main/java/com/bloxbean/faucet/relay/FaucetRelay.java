@@ -0,0 +1,226 @@
+package com.bloxbean.faucet.relay;
+
+import avm.Address;
+import org.aion.avm.tooling.ABIUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relay service in front of the faucet contract. Registration and topup requests are queued and submitted
+ * periodically, typically once per block interval, as batched registerAddresses / topUpAddresses transactions
+ * signed by an operator account. A burst of requests therefore results in a few transactions instead of one per request.
+ * With a {@link PipelinedSubmitter}, the batches are spread over multiple operators and don't wait for each other's receipts.
+ */
+public class FaucetRelay {
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 10_000L; //10 sec per block
+    public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 100_000;
+
+    private static final String REGISTER_METHOD = "registerAddresses";
+    private static final String TOPUP_METHOD = "topUpAddresses";
+
+    private final TransactionSender sender;
+    private final long flushIntervalMillis;
+    private final int maxBatchSize;
+
+    private final BlockingQueue<PendingRequest> registrations;
+    private final BlockingQueue<PendingRequest> topups;
+
+    private volatile EligibilityPreCheck preCheck;
+    private ScheduledExecutorService scheduler;
+
+    public FaucetRelay(ChainClient chainClient, Address operator) {
+        this(chainClient, operator, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_QUEUE_SIZE);
+    }
+
+    /**
+     * @param chainClient client used to submit transactions
+     * @param operator operator account which signs the transactions
+     * @param flushIntervalMillis interval between two submissions of queued requests
+     * @param maxBatchSize maximum no of addresses per transaction
+     * @param maxQueueSize maximum no of queued requests of each type. Requests beyond this are rejected.
+     */
+    public FaucetRelay(ChainClient chainClient, Address operator, long flushIntervalMillis, int maxBatchSize, int maxQueueSize) {
+        this(txData -> CompletableFuture.completedFuture(chainClient.call(operator, txData)), flushIntervalMillis, maxBatchSize, maxQueueSize);
+    }
+
+    public FaucetRelay(TransactionSender sender) {
+        this(sender, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_QUEUE_SIZE);
+    }
+
+    /**
+     * @param sender sends the transactions from one or more operator accounts
+     * @param flushIntervalMillis interval between two submissions of queued requests
+     * @param maxBatchSize maximum no of addresses per transaction
+     * @param maxQueueSize maximum no of queued requests of each type. Requests beyond this are rejected.
+     */
+    public FaucetRelay(TransactionSender sender, long flushIntervalMillis, int maxBatchSize, int maxQueueSize) {
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("maxBatchSize should be greater than 0");
+
+        this.sender = sender;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.registrations = new LinkedBlockingQueue<>(maxQueueSize);
+        this.topups = new LinkedBlockingQueue<>(maxQueueSize);
+    }
+
+    /**
+     * Queue a registration request
+     * @param recipient address to register
+     * @return completed with true if the address was registered, false if the contract skipped it
+     */
+    public CompletableFuture<Boolean> register(Address recipient) {
+        EligibilityPreCheck check = preCheck;
+        if (check != null && recipient != null)
+            return enqueue(registrations, recipient, check.checkRegistration(recipient));
+        else
+            return enqueue(registrations, recipient, EligibilityPreCheck.Result.ACCEPTED);
+    }
+
+    /**
+     * Queue a topup request
+     * @param recipient registered address to topup
+     * @return completed with true if the address was topped up, false if the contract skipped it
+     */
+    public CompletableFuture<Boolean> topUp(Address recipient) {
+        EligibilityPreCheck check = preCheck;
+        if (check != null && recipient != null)
+            return enqueue(topups, recipient, check.checkTopUp(recipient));
+        else
+            return enqueue(topups, recipient, EligibilityPreCheck.Result.ACCEPTED);
+    }
+
+    /**
+     * Reject requests which are certain to fail before they are queued. Rejected requests are completed exceptionally
+     * with a {@link RelayException}.
+     * @param preCheck pre-check, or null to queue all requests
+     */
+    public void setPreCheck(EligibilityPreCheck preCheck) {
+        this.preCheck = preCheck;
+    }
+
+    /**
+     * Start submitting queued requests every flush interval
+     */
+    public synchronized void start() {
+        if (scheduler != null)
+            return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "faucet-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the periodic submission and submit the requests which are still queued
+     */
+    public void stop() throws InterruptedException {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = scheduler;
+            scheduler = null;
+        }
+
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        flush();
+    }
+
+    /**
+     * Submit all queued requests as batches. Registrations are submitted before topups. Requests are completed when
+     * the results of their transactions are available.
+     * @return no of transactions submitted
+     */
+    public synchronized int flush() {
+        return flushQueue(registrations, REGISTER_METHOD) + flushQueue(topups, TOPUP_METHOD);
+    }
+
+    public int getQueuedRegistrations() {
+        return registrations.size();
+    }
+
+    public int getQueuedTopups() {
+        return topups.size();
+    }
+
+    private CompletableFuture<Boolean> enqueue(BlockingQueue<PendingRequest> queue, Address recipient, EligibilityPreCheck.Result check) {
+        if (recipient == null)
+            throw new IllegalArgumentException("recipient can't be null");
+
+        PendingRequest request = new PendingRequest(recipient);
+        if (check != EligibilityPreCheck.Result.ACCEPTED)
+            request.future.completeExceptionally(new RelayException("Rejected by pre-check: " + check));
+        else if (!queue.offer(request))
+            request.future.completeExceptionally(new RelayException("Relay queue is full"));
+
+        return request.future;
+    }
+
+    private int flushQueue(BlockingQueue<PendingRequest> queue, String method) {
+        int transactions = 0;
+        List<PendingRequest> batch = new ArrayList<>(maxBatchSize);
+        while (queue.drainTo(batch, maxBatchSize) > 0) {
+            submit(method, batch);
+            batch = new ArrayList<>(maxBatchSize);
+            transactions++;
+        }
+        return transactions;
+    }
+
+    private void submit(String method, List<PendingRequest> batch) {
+        Address[] recipients = new Address[batch.size()];
+        for (int i = 0; i < recipients.length; i++)
+            recipients[i] = batch.get(i).recipient;
+
+        CompletableFuture<CallResult> result;
+        try {
+            result = sender.send(ABIUtil.encodeMethodArguments(method, (Object) recipients));
+        } catch (RuntimeException e) {
+            fail(batch, e);
+            return;
+        }
+
+        result.whenComplete((callResult, error) -> {
+            if (error != null) {
+                fail(batch, error);
+            } else if (!callResult.isSuccess()) {
+                fail(batch, new RelayException(method + " transaction failed: " + callResult.getError()));
+            } else {
+                try {
+                    boolean[] statuses = (boolean[]) ABIUtil.decodeOneObject(callResult.getOutput());
+                    for (int i = 0; i < batch.size(); i++)
+                        batch.get(i).future.complete(statuses[i]);
+                } catch (RuntimeException e) {
+                    fail(batch, e);
+                }
+            }
+        });
+    }
+
+    private static void fail(List<PendingRequest> batch, Throwable cause) {
+        for (PendingRequest request : batch)
+            request.future.completeExceptionally(cause);
+    }
+
+    private static class PendingRequest {
+        private final Address recipient;
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        private PendingRequest(Address recipient) {
+            this.recipient = recipient;
+        }
+    }
+}
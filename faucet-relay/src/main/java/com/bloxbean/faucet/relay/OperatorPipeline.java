@@ -0,0 +1,188 @@
+package com.bloxbean.faucet.relay;
+
+import avm.Address;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Nonce pipeline of one operator account. Assigns consecutive nonces to transactions and keeps up to maxInFlight of
+ * them sent but not yet included. Not thread safe, used under {@link PipelinedSubmitter}'s lock.
+ */
+class OperatorPipeline {
+    private final TransactionChainClient client;
+    private final Address operator;
+    private final int maxInFlight;
+    private final long dropTimeoutMillis;
+    private final int maxRetries;
+
+    //In-flight transactions by nonce
+    private final TreeMap<Long, InFlight> inFlight = new TreeMap<>();
+    private long nextNonce = -1;
+    //Consecutive polls which failed with an error of the chain client. Maintained by PipelinedSubmitter.
+    int failedPolls;
+
+    OperatorPipeline(TransactionChainClient client, Address operator, int maxInFlight, long dropTimeoutMillis, int maxRetries) {
+        this.client = client;
+        this.operator = operator;
+        this.maxInFlight = maxInFlight;
+        this.dropTimeoutMillis = dropTimeoutMillis;
+        this.maxRetries = maxRetries;
+    }
+
+    Address getOperator() {
+        return operator;
+    }
+
+    int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    boolean hasCapacity() {
+        return inFlight.size() < maxInFlight;
+    }
+
+    /**
+     * Send a transaction with the next nonce. If the send fails without a definite rejection, the transaction may have
+     * been broadcast. It then keeps its nonce in this pipeline, as if it was sent, and is recovered by {@link #poll(long)}.
+     * @return false if the chain rejected the transaction. The nonce is re-synced from the chain in that case.
+     * @throws RuntimeException if the chain isn't reachable before the transaction is sent
+     */
+    boolean send(Submission submission, long now) {
+        if (nextNonce < 0)
+            nextNonce = client.getNonce(operator);
+
+        byte[] txHash;
+        try {
+            txHash = client.sendTransaction(operator, nextNonce, submission.txData);
+        } catch (TransactionRejectedException e) {
+            submission.attempts++;
+            long chainNonce = client.getNonce(operator);
+            nextNonce = inFlight.isEmpty() ? chainNonce : Math.max(chainNonce, inFlight.lastKey() + 1);
+            return false;
+        } catch (RuntimeException e) {
+            //Outcome unknown. The hash isn't known either, so a receipt can only be found for a re-send.
+            txHash = null;
+        }
+
+        inFlight.put(nextNonce, new InFlight(submission, txHash, now));
+        nextNonce++;
+        return true;
+    }
+
+    /**
+     * Complete included transactions and recover from a dropped one. A transaction is considered dropped when it is the
+     * lowest in-flight nonce and has no receipt after dropTimeoutMillis. It is re-sent with the same nonce and payload
+     * upto maxRetries times. After that its nonce is filled with a no-op, so that the later transactions, which keep
+     * their nonces, can be included. A sent submission never gets another nonce, as an earlier attempt can still be
+     * included and the submission would run twice.
+     * @param now current time in millis
+     */
+    void poll(long now) {
+        Iterator<InFlight> iterator = inFlight.values().iterator();
+        while (iterator.hasNext()) {
+            InFlight tx = iterator.next();
+            CallResult receipt = tx.getReceipt();
+            if (receipt != null) {
+                iterator.remove();
+                tx.submission.future.complete(receipt);
+            } else if (tx.isNoOpIncluded()) {
+                iterator.remove();
+                tx.submission.future.completeExceptionally(new RelayException("Transaction of operator " + operator
+                        + " was replaced by a no-op after " + tx.submission.attempts + " attempts"));
+            }
+        }
+
+        if (inFlight.isEmpty())
+            return;
+
+        Map.Entry<Long, InFlight> lowest = inFlight.firstEntry();
+        long nonce = lowest.getKey();
+        InFlight tx = lowest.getValue();
+        if (now - tx.sentAt < dropTimeoutMillis)
+            return;
+        tx.sentAt = now;
+
+        long chainNonce = client.getNonce(operator);
+        if (nonce < chainNonce) {
+            //The nonce is used. Either an attempt of this transaction was included and its receipt is late, or the nonce
+            //was taken from outside this pipeline. It is not re-sent in either case. Wait maxRetries timeouts for a receipt.
+            if (++tx.usedNonceChecks > maxRetries) {
+                inFlight.remove(nonce);
+                tx.submission.future.completeExceptionally(new RelayException("Nonce " + nonce + " of operator " + operator
+                        + " was used, but no receipt of the transaction was found"));
+            }
+            return;
+        }
+
+        if (tx.noOpHashes.isEmpty()) {
+            tx.submission.attempts++;
+            if (tx.submission.attempts <= maxRetries) {
+                try {
+                    tx.txHashes.add(client.sendTransaction(operator, nonce, tx.submission.txData));
+                    return;
+                } catch (TransactionRejectedException e) {
+                    //Fill the nonce below
+                } catch (RuntimeException e) {
+                    //May have been broadcast. Check again after the next timeout.
+                    return;
+                }
+            }
+        }
+
+        //Give up on the payload, but keep its hashes. Whichever transaction with this nonce is included completes it.
+        try {
+            tx.noOpHashes.add(client.sendNoOp(operator, nonce));
+        } catch (RuntimeException e) {
+            //Try again after the next timeout
+        }
+    }
+
+    /**
+     * Fail all in-flight transactions. They may still be included. The next nonce is re-synced from the chain.
+     */
+    void abort(Exception cause) {
+        for (InFlight tx : inFlight.values())
+            tx.submission.future.completeExceptionally(cause);
+        inFlight.clear();
+        nextNonce = -1;
+        failedPolls = 0;
+    }
+
+    private class InFlight {
+        private final Submission submission;
+        //Hashes of all attempts with this nonce. Any of them may be included. Empty if the only send failed without a hash.
+        private final List<byte[]> txHashes = new ArrayList<>();
+        //Hashes of no-ops sent to fill this nonce after maxRetries
+        private final List<byte[]> noOpHashes = new ArrayList<>();
+        private long sentAt;
+        private int usedNonceChecks;
+
+        private InFlight(Submission submission, byte[] txHash, long sentAt) {
+            this.submission = submission;
+            if (txHash != null)
+                this.txHashes.add(txHash);
+            this.sentAt = sentAt;
+        }
+
+        private CallResult getReceipt() {
+            for (byte[] txHash : txHashes) {
+                CallResult receipt = client.getReceipt(txHash);
+                if (receipt != null)
+                    return receipt;
+            }
+            return null;
+        }
+
+        private boolean isNoOpIncluded() {
+            for (byte[] txHash : noOpHashes) {
+                if (client.getReceipt(txHash) != null)
+                    return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.bloxbean.faucet.relay;
+
+import avm.Address;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Submits transactions through multiple operator accounts in parallel. Each operator has its own nonce pipeline with up to
+ * maxInFlight transactions sent but not yet included, so transactions don't wait for the previous receipt.
+ * New transactions go to the operator with the fewest in-flight transactions. Throughput grows with the no of operators.
+ *
+ * Receipts are checked every poll interval after {@link #start()}, or on {@link #poll()}.
+ *
+ * A transaction is only moved to another operator if the chain rejected it ({@link TransactionRejectedException}).
+ * After any other send failure it may have been broadcast, so it keeps its operator and nonce and can be included at
+ * most once. If the chain can't be reached for more than maxRetries polls, the affected transactions are failed.
+ * The last error of the chain client is kept in {@link #getLastError()}.
+ */
+public class PipelinedSubmitter implements TransactionSender {
+    public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 1_000L;
+    public static final long DEFAULT_DROP_TIMEOUT_MILLIS = 60_000L;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    private final List<OperatorPipeline> pipelines = new ArrayList<>();
+    private final Deque<Submission> pending = new ArrayDeque<>();
+    private final long pollIntervalMillis;
+    private final int maxRetries;
+
+    private ScheduledExecutorService scheduler;
+    private RuntimeException lastError;
+    private int failedDispatches;
+
+    public PipelinedSubmitter(TransactionChainClient client, List<Address> operators) {
+        this(client, operators, DEFAULT_MAX_IN_FLIGHT, DEFAULT_POLL_INTERVAL_MILLIS, DEFAULT_DROP_TIMEOUT_MILLIS, DEFAULT_MAX_RETRIES);
+    }
+
+    /**
+     * @param client chain client which signs transactions of the operators
+     * @param operators operator accounts registered in the faucet contract
+     * @param maxInFlight maximum no of in-flight transactions per operator
+     * @param pollIntervalMillis interval between receipt checks
+     * @param dropTimeoutMillis time without receipt after which a transaction is considered dropped and re-sent
+     * @param maxRetries maximum no of re-sends of a transaction before its nonce is filled with a no-op and it fails.
+     *                   Also the no of consecutive polls in which the chain may be unreachable before transactions fail.
+     */
+    public PipelinedSubmitter(TransactionChainClient client, List<Address> operators, int maxInFlight,
+                              long pollIntervalMillis, long dropTimeoutMillis, int maxRetries) {
+        if (operators == null || operators.isEmpty())
+            throw new IllegalArgumentException("At least one operator is required");
+        if (maxInFlight <= 0)
+            throw new IllegalArgumentException("maxInFlight should be greater than 0");
+
+        for (Address operator : operators)
+            pipelines.add(new OperatorPipeline(client, operator, maxInFlight, dropTimeoutMillis, maxRetries));
+
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.maxRetries = maxRetries;
+    }
+
+    @Override
+    public synchronized CompletableFuture<CallResult> send(byte[] txData) {
+        Submission submission = new Submission(txData);
+        pending.addLast(submission);
+        dispatch(System.currentTimeMillis());
+
+        return submission.future;
+    }
+
+    /**
+     * Start checking receipts every poll interval
+     */
+    public synchronized void start() {
+        if (scheduler != null)
+            return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "faucet-submitter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop checking receipts. Pending and in-flight transactions are failed.
+     */
+    public void stop() throws InterruptedException {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = scheduler;
+            scheduler = null;
+        }
+
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(pollIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        synchronized (this) {
+            RelayException cause = new RelayException("Submitter is stopped");
+            for (OperatorPipeline pipeline : pipelines)
+                pipeline.abort(cause);
+            for (Submission submission : pending)
+                submission.future.completeExceptionally(cause);
+            pending.clear();
+        }
+    }
+
+    /**
+     * Check receipts of in-flight transactions, recover dropped ones and send pending transactions
+     */
+    public synchronized void poll() {
+        long now = System.currentTimeMillis();
+        for (OperatorPipeline pipeline : pipelines) {
+            try {
+                pipeline.poll(now);
+                pipeline.failedPolls = 0;
+            } catch (RuntimeException e) {
+                //Chain not reachable. Try again in next poll, upto maxRetries times.
+                lastError = e;
+                if (++pipeline.failedPolls > maxRetries)
+                    pipeline.abort(new RelayException("Chain not reachable for operator " + pipeline.getOperator()
+                            + " in " + pipeline.failedPolls + " polls. Transactions may still be included.", e));
+            }
+        }
+
+        dispatch(now);
+    }
+
+    /**
+     * @return last error of the chain client while polling or sending, null if none
+     */
+    public synchronized RuntimeException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * @return no of transactions waiting for an operator
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return no of transactions sent but not yet included, over all operators
+     */
+    public synchronized int getInFlightCount() {
+        int count = 0;
+        for (OperatorPipeline pipeline : pipelines)
+            count += pipeline.getInFlightCount();
+        return count;
+    }
+
+    private void dispatch(long now) {
+        while (!pending.isEmpty()) {
+            OperatorPipeline pipeline = leastLoadedPipeline();
+            if (pipeline == null)
+                return; //All pipelines are full. Continue after next poll.
+
+            Submission submission = pending.pollFirst();
+            boolean sent;
+            try {
+                sent = pipeline.send(submission, now);
+                failedDispatches = 0;
+            } catch (RuntimeException e) {
+                //Chain not reachable before the transaction was sent. Try again in next poll, upto maxRetries times.
+                lastError = e;
+                pending.addFirst(submission);
+                if (++failedDispatches > maxRetries) {
+                    RelayException cause = new RelayException("Chain not reachable in " + failedDispatches + " attempts", e);
+                    for (Submission waiting : pending)
+                        waiting.future.completeExceptionally(cause);
+                    pending.clear();
+                    failedDispatches = 0;
+                }
+                return;
+            }
+
+            if (!sent) {
+                if (submission.attempts > maxRetries)
+                    submission.future.completeExceptionally(new RelayException("Transaction was rejected "
+                            + submission.attempts + " times"));
+                else
+                    pending.addFirst(submission);
+            }
+        }
+    }
+
+    private OperatorPipeline leastLoadedPipeline() {
+        OperatorPipeline selected = null;
+        for (OperatorPipeline pipeline : pipelines) {
+            if (pipeline.hasCapacity() && (selected == null || pipeline.getInFlightCount() < selected.getInFlightCount()))
+                selected = pipeline;
+        }
+        return selected;
+    }
+}
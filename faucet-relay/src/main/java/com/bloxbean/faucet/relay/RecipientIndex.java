@@ -0,0 +1,410 @@
+package com.bloxbean.faucet.relay;
+
+import avm.Address;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-memory index of recipients and operators, built from the faucet contract's logs. Answers eligibility and totals
+ * queries without a contract call. Recipients are stored in an open addressing hash table keyed by the address as four
+ * longs, with the recipient's fields in parallel primitive arrays.
+ *
+ * Logs are applied one block at a time with {@link #applyBlock(long, List)}. The index can be saved with
+ * {@link #writeCheckpoint(OutputStream)} and resumed from the block after {@link #getLastProcessedBlock()}.
+ * The rate limit mirrors the contract's token bucket, which has to be configured with the same capacity and refill
+ * blocks as the contract.
+ *
+ * Only a registration log shows a recipient's full state. A recipient first seen in a topup, e.g. because the index
+ * started after its registration, has an unknown token bucket and total, and a v1 registration has an unknown total.
+ * Unknown state isn't made up: {@link #canTopUp(Address, long)} leaves such recipients to the contract, and
+ * {@link #getTotal(Address)} only counts the amounts seen.
+ */
+public class RecipientIndex {
+    private static final int CHECKPOINT_VERSION = 2;
+    private static final byte UNKNOWN_TOKEN_BUCKET = 1;
+    private static final byte UNKNOWN_TOTAL = 2;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final byte EVENT_SCHEMA_V2 = 2;
+    private static final int AMOUNT_EVENT_DATA_LENGTH = 1 + 32 + Long.BYTES;
+    private static final int ADDRESS_LENGTH = 32;
+
+    private final TokenBucket rateLimit;
+
+    private long lastProcessedBlock = -1;
+
+    //Open addressing table. Slot i uses keys[4i..4i+3]
+    private int size;
+    private boolean[] used;
+    private long[] keys;
+    private long[] totalHigh;
+    private long[] totalLow;
+    private long[] lastRequestBlockNo;
+    private long[] tokenBucket;
+    //UNKNOWN_TOKEN_BUCKET and UNKNOWN_TOTAL bits
+    private byte[] flags;
+
+    private final Set<Address> operators = new HashSet<>();
+
+    /**
+     * @param capacity contract's rateLimitCapacity
+     * @param refillBlocks contract's rateLimitRefillBlocks
+     */
+    public RecipientIndex(int capacity, long refillBlocks) {
+        this.rateLimit = new TokenBucket(capacity, refillBlocks);
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Apply all faucet logs of a block. Blocks up to {@link #getLastProcessedBlock()} are ignored, so logs can be
+     * replayed safely after a restart.
+     * @param blockNumber
+     * @param logs logs of the block in the order they were published
+     * @return false if the block was already processed
+     */
+    public synchronized boolean applyBlock(long blockNumber, List<FaucetLog> logs) {
+        if (blockNumber <= lastProcessedBlock)
+            return false;
+
+        for (FaucetLog log : logs)
+            apply(log, blockNumber);
+
+        lastProcessedBlock = blockNumber;
+        return true;
+    }
+
+    public synchronized long getLastProcessedBlock() {
+        return lastProcessedBlock;
+    }
+
+    public synchronized int getRecipientCount() {
+        return size;
+    }
+
+    public synchronized boolean isRegistered(Address address) {
+        return find(address.toByteArray()) >= 0;
+    }
+
+    /**
+     * Same check as the contract's topUp: the address is registered and has a token left at blockNumber
+     * @param address
+     * @param blockNumber current block number
+     * @return true if a topUp from the address may pass the contract's checks. Always true for a registered address
+     * with an unknown token bucket.
+     */
+    public synchronized boolean canTopUp(Address address, long blockNumber) {
+        int slot = find(address.toByteArray());
+        return slot >= 0 && ((flags[slot] & UNKNOWN_TOKEN_BUCKET) != 0 || rateLimit.hasToken(tokenBucket[slot], blockNumber));
+    }
+
+    /**
+     * @return true if the address is registered and its registration was processed, so its token bucket is exact
+     */
+    public synchronized boolean isTokenBucketKnown(Address address) {
+        int slot = find(address.toByteArray());
+        return slot >= 0 && (flags[slot] & UNKNOWN_TOKEN_BUCKET) == 0;
+    }
+
+    /**
+     * @return true if the address is registered and all amounts it received were processed
+     */
+    public synchronized boolean isTotalKnown(Address address) {
+        int slot = find(address.toByteArray());
+        return slot >= 0 && (flags[slot] & UNKNOWN_TOTAL) == 0;
+    }
+
+    /**
+     * @return total amount received by the address, 0 if not registered. Only the amounts seen if the total isn't known.
+     */
+    public synchronized BigInteger getTotal(Address address) {
+        int slot = find(address.toByteArray());
+        return slot >= 0 ? totalOf(slot) : BigInteger.ZERO;
+    }
+
+    /**
+     * @return last request block number, -1 if not registered
+     */
+    public synchronized long getLastRequestBlockNo(Address address) {
+        int slot = find(address.toByteArray());
+        return slot >= 0 ? lastRequestBlockNo[slot] : -1;
+    }
+
+    /**
+     * @return no of used topups as of the last request, -1 if not registered or the token bucket isn't known
+     */
+    public synchronized int getRetryCount(Address address) {
+        int slot = find(address.toByteArray());
+        return slot >= 0 && (flags[slot] & UNKNOWN_TOKEN_BUCKET) == 0 ? rateLimit.used(tokenBucket[slot]) : -1;
+    }
+
+    /**
+     * Visit all indexed recipients
+     * @param visitor
+     */
+    public synchronized void forEachRecipient(RecipientVisitor visitor) {
+        byte[] address = new byte[ADDRESS_LENGTH];
+        ByteBuffer buffer = ByteBuffer.wrap(address);
+        for (int slot = 0; slot < used.length; slot++) {
+            if (!used[slot])
+                continue;
+
+            buffer.clear();
+            for (int i = 0; i < 4; i++)
+                buffer.putLong(keys[4 * slot + i]);
+
+            visitor.visit(new Address(address.clone()), lastRequestBlockNo[slot], tokenBucket[slot],
+                    (flags[slot] & UNKNOWN_TOKEN_BUCKET) == 0);
+        }
+    }
+
+    public synchronized boolean isOperator(Address address) {
+        return operators.contains(address);
+    }
+
+    public synchronized void writeCheckpoint(OutputStream out) throws IOException {
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(CHECKPOINT_VERSION);
+        dataOut.writeLong(lastProcessedBlock);
+
+        dataOut.writeInt(operators.size());
+        for (Address operator : operators)
+            dataOut.write(operator.toByteArray());
+
+        dataOut.writeInt(size);
+        for (int slot = 0; slot < used.length; slot++) {
+            if (!used[slot])
+                continue;
+
+            for (int i = 0; i < 4; i++)
+                dataOut.writeLong(keys[4 * slot + i]);
+            dataOut.writeLong(totalHigh[slot]);
+            dataOut.writeLong(totalLow[slot]);
+            dataOut.writeLong(lastRequestBlockNo[slot]);
+            dataOut.writeLong(tokenBucket[slot]);
+            dataOut.writeByte(flags[slot]);
+        }
+        dataOut.flush();
+    }
+
+    /**
+     * Restore an index saved with {@link #writeCheckpoint(OutputStream)}
+     */
+    public static RecipientIndex readCheckpoint(InputStream in, int capacity, long refillBlocks) throws IOException {
+        DataInputStream dataIn = new DataInputStream(in);
+        int version = dataIn.readInt();
+        if (version != CHECKPOINT_VERSION)
+            throw new IOException("Unsupported checkpoint version: " + version);
+
+        RecipientIndex index = new RecipientIndex(capacity, refillBlocks);
+        index.lastProcessedBlock = dataIn.readLong();
+
+        int operatorCount = dataIn.readInt();
+        for (int i = 0; i < operatorCount; i++) {
+            byte[] operator = new byte[ADDRESS_LENGTH];
+            dataIn.readFully(operator);
+            index.operators.add(new Address(operator));
+        }
+
+        int recipientCount = dataIn.readInt();
+        byte[] address = new byte[ADDRESS_LENGTH];
+        ByteBuffer addressBuffer = ByteBuffer.wrap(address);
+        for (int i = 0; i < recipientCount; i++) {
+            addressBuffer.clear();
+            for (int j = 0; j < 4; j++)
+                addressBuffer.putLong(dataIn.readLong());
+
+            int slot = index.insert(address);
+            index.totalHigh[slot] = dataIn.readLong();
+            index.totalLow[slot] = dataIn.readLong();
+            index.lastRequestBlockNo[slot] = dataIn.readLong();
+            index.tokenBucket[slot] = dataIn.readLong();
+            index.flags[slot] = dataIn.readByte();
+        }
+        return index;
+    }
+
+    public interface RecipientVisitor {
+        /**
+         * @param tokenBucket packed token bucket as of the last request
+         * @param tokenBucketKnown false if the registration wasn't processed. tokenBucket is meaningless then.
+         */
+        void visit(Address address, long lastRequestBlockNo, long tokenBucket, boolean tokenBucketKnown);
+    }
+
+    private void apply(FaucetLog log, long blockNumber) {
+        String event = log.getEventName();
+        if (event == null)
+            return;
+
+        List<byte[]> topics = log.getTopics();
+        byte[] data = log.getData();
+        boolean v2 = data != null && data.length > 0 && data[0] == EVENT_SCHEMA_V2 && topics.size() > 1;
+
+        switch (event) {
+            case "AddressRegistered":
+                if (v2)
+                    register(topics.get(1), amount(data), blockNumber);
+                else
+                    register(data, null, blockNumber); //v1 doesn't publish the amount
+                break;
+            case "TopUp":
+                BigInteger amount = v2 ? amount(data) : new BigInteger(new String(data, StandardCharsets.US_ASCII));
+                topUp(topics.get(1), amount, blockNumber);
+                break;
+            case "OperatorAdded":
+                operators.add(new Address(v2 ? topics.get(1) : data));
+                break;
+            case "OperatorRemoved":
+                operators.remove(new Address(v2 ? topics.get(1) : data));
+                break;
+            default:
+                //Events which don't change recipients or operators
+        }
+    }
+
+    /**
+     * @param amount initial topup amount, null if unknown
+     */
+    private void register(byte[] address, BigInteger amount, long blockNumber) {
+        int slot = insert(address);
+        setTotal(slot, amount != null ? amount : BigInteger.ZERO);
+        lastRequestBlockNo[slot] = blockNumber;
+        tokenBucket[slot] = rateLimit.full(blockNumber);
+        flags[slot] = amount != null ? 0 : UNKNOWN_TOTAL;
+    }
+
+    private void topUp(byte[] address, BigInteger amount, long blockNumber) {
+        int slot = find(address);
+        if (slot < 0) {
+            //Registered before the first processed block. Its tokens before this topup and earlier amounts are unknown.
+            slot = insert(address);
+            flags[slot] = UNKNOWN_TOKEN_BUCKET | UNKNOWN_TOTAL;
+        }
+
+        if ((flags[slot] & UNKNOWN_TOKEN_BUCKET) == 0)
+            tokenBucket[slot] = rateLimit.consume(tokenBucket[slot], blockNumber);
+        lastRequestBlockNo[slot] = blockNumber;
+        setTotal(slot, totalOf(slot).add(amount));
+    }
+
+    private BigInteger totalOf(int slot) {
+        byte[] bytes = ByteBuffer.allocate(2 * Long.BYTES).putLong(totalHigh[slot]).putLong(totalLow[slot]).array();
+        return new BigInteger(1, bytes);
+    }
+
+    private void setTotal(int slot, BigInteger total) {
+        totalLow[slot] = total.longValue();
+        totalHigh[slot] = total.shiftRight(Long.SIZE).longValue();
+    }
+
+    private static BigInteger amount(byte[] data) {
+        if (data.length != AMOUNT_EVENT_DATA_LENGTH)
+            throw new IllegalArgumentException("Invalid event data length: " + data.length);
+
+        byte[] amount = new byte[32];
+        System.arraycopy(data, 1, amount, 0, amount.length);
+        return new BigInteger(1, amount);
+    }
+
+    private int find(byte[] address) {
+        ByteBuffer buffer = ByteBuffer.wrap(address);
+        long k0 = buffer.getLong(), k1 = buffer.getLong(), k2 = buffer.getLong(), k3 = buffer.getLong();
+
+        int mask = used.length - 1;
+        for (int slot = hash(k0, k1, k2, k3) & mask; used[slot]; slot = (slot + 1) & mask) {
+            int i = 4 * slot;
+            if (keys[i] == k0 && keys[i + 1] == k1 && keys[i + 2] == k2 && keys[i + 3] == k3)
+                return slot;
+        }
+        return -1;
+    }
+
+    /**
+     * @return slot of the address. A new slot is added if the address isn't in the table.
+     */
+    private int insert(byte[] address) {
+        if (address == null || address.length != ADDRESS_LENGTH)
+            throw new IllegalArgumentException("Invalid address");
+
+        int slot = find(address);
+        if (slot >= 0)
+            return slot;
+
+        if (2 * (size + 1) > used.length)
+            resize(2 * used.length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(address);
+        long k0 = buffer.getLong(), k1 = buffer.getLong(), k2 = buffer.getLong(), k3 = buffer.getLong();
+
+        int mask = used.length - 1;
+        slot = hash(k0, k1, k2, k3) & mask;
+        while (used[slot])
+            slot = (slot + 1) & mask;
+
+        used[slot] = true;
+        keys[4 * slot] = k0;
+        keys[4 * slot + 1] = k1;
+        keys[4 * slot + 2] = k2;
+        keys[4 * slot + 3] = k3;
+        size++;
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        boolean[] oldUsed = used;
+        long[] oldKeys = keys;
+        long[] oldTotalHigh = totalHigh;
+        long[] oldTotalLow = totalLow;
+        long[] oldLastRequestBlockNo = lastRequestBlockNo;
+        long[] oldTokenBucket = tokenBucket;
+        byte[] oldFlags = flags;
+
+        allocate(capacity);
+
+        int mask = capacity - 1;
+        for (int oldSlot = 0; oldSlot < oldUsed.length; oldSlot++) {
+            if (!oldUsed[oldSlot])
+                continue;
+
+            int k = 4 * oldSlot;
+            int slot = hash(oldKeys[k], oldKeys[k + 1], oldKeys[k + 2], oldKeys[k + 3]) & mask;
+            while (used[slot])
+                slot = (slot + 1) & mask;
+
+            used[slot] = true;
+            System.arraycopy(oldKeys, k, keys, 4 * slot, 4);
+            totalHigh[slot] = oldTotalHigh[oldSlot];
+            totalLow[slot] = oldTotalLow[oldSlot];
+            lastRequestBlockNo[slot] = oldLastRequestBlockNo[oldSlot];
+            tokenBucket[slot] = oldTokenBucket[oldSlot];
+            flags[slot] = oldFlags[oldSlot];
+        }
+    }
+
+    private void allocate(int capacity) {
+        used = new boolean[capacity];
+        keys = new long[4 * capacity];
+        totalHigh = new long[capacity];
+        totalLow = new long[capacity];
+        lastRequestBlockNo = new long[capacity];
+        tokenBucket = new long[capacity];
+        flags = new byte[capacity];
+    }
+
+    private static int hash(long k0, long k1, long k2, long k3) {
+        long h = k0 * 0x9E3779B97F4A7C15L;
+        h = (h ^ k1) * 0x9E3779B97F4A7C15L;
+        h = (h ^ k2) * 0x9E3779B97F4A7C15L;
+        h = (h ^ k3) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
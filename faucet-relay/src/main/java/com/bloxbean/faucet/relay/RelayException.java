@@ -0,0 +1,12 @@
+package com.bloxbean.faucet.relay;
+
+public class RelayException extends RuntimeException {
+
+    public RelayException(String message) {
+        super(message);
+    }
+
+    public RelayException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
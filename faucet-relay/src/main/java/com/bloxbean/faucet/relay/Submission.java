@@ -0,0 +1,16 @@
+package com.bloxbean.faucet.relay;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A transaction waiting for its result in {@link PipelinedSubmitter}
+ */
+class Submission {
+    final byte[] txData;
+    final CompletableFuture<CallResult> future = new CompletableFuture<>();
+    int attempts;
+
+    Submission(byte[] txData) {
+        this.txData = txData;
+    }
+}
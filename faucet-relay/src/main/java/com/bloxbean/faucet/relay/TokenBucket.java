@@ -0,0 +1,83 @@
+package com.bloxbean.faucet.relay;
+
+/**
+ * The faucet contract's per recipient rate limit. A bucket is packed in a long the same way as the contract stores it:
+ * tokens in the upper 16 bits and the last refill block number in the lower 48 bits.
+ */
+final class TokenBucket {
+    private static final int BLOCK_BITS = 48;
+    private static final long BLOCK_MASK = (1L << BLOCK_BITS) - 1;
+    private static final int MAX_CAPACITY = 0xFFFF;
+
+    private final int capacity;
+    private final long refillBlocks;
+
+    /**
+     * @param capacity contract's rateLimitCapacity
+     * @param refillBlocks contract's rateLimitRefillBlocks
+     */
+    TokenBucket(int capacity, long refillBlocks) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY || refillBlocks <= 0)
+            throw new IllegalArgumentException("Invalid rate limit: " + capacity + " per " + refillBlocks + " blocks");
+
+        this.capacity = capacity;
+        this.refillBlocks = refillBlocks;
+    }
+
+    /**
+     * @return bucket of a newly registered recipient
+     */
+    long full(long blockNumber) {
+        return pack(capacity, blockNumber);
+    }
+
+    /**
+     * @return bucket refilled upto blockNumber
+     */
+    long refill(long bucket, long blockNumber) {
+        int tokens = tokens(bucket);
+        long lastRefill = lastRefillBlock(bucket);
+
+        if (tokens >= capacity)
+            return pack(capacity, blockNumber);
+
+        long refills = (blockNumber - lastRefill) / refillBlocks;
+        if (refills <= 0)
+            return bucket;
+        else if (refills >= capacity - tokens)
+            return pack(capacity, blockNumber);
+        else
+            return pack(tokens + (int) refills, lastRefill + refills * refillBlocks);
+    }
+
+    /**
+     * @return bucket after a topup at blockNumber
+     */
+    long consume(long bucket, long blockNumber) {
+        long refilled = refill(bucket, blockNumber);
+        return pack(Math.max(0, tokens(refilled) - 1), lastRefillBlock(refilled));
+    }
+
+    boolean hasToken(long bucket, long blockNumber) {
+        return tokens(refill(bucket, blockNumber)) > 0;
+    }
+
+    /**
+     * @return no of used tokens in the stored bucket
+     */
+    int used(long bucket) {
+        return Math.max(0, capacity - tokens(bucket));
+    }
+
+    static int tokens(long bucket) {
+        return (int) (bucket >>> BLOCK_BITS);
+    }
+
+    static long lastRefillBlock(long bucket) {
+        return bucket & BLOCK_MASK;
+    }
+
+    private static long pack(int tokens, long lastRefillBlock) {
+        return ((long) tokens << BLOCK_BITS) | (lastRefillBlock & BLOCK_MASK);
+    }
+}
@@ -0,0 +1,46 @@
+package com.bloxbean.faucet.relay;
+
+import avm.Address;
+
+/**
+ * Asynchronous connection to the chain on which the faucet contract is deployed. Used by {@link PipelinedSubmitter}
+ * to keep multiple transactions of an operator in flight. Implementations hold the operator keys and sign the transactions.
+ */
+public interface TransactionChainClient {
+
+    /**
+     * Get the nonce of the next transaction of an account, based on the transactions already included in the chain
+     * @param account
+     * @return next nonce
+     */
+    long getNonce(Address account);
+
+    /**
+     * Sign and send a transaction calling the faucet contract without waiting for its receipt
+     * @param from operator account
+     * @param nonce nonce of the transaction
+     * @param txData ABI encoded method call
+     * @return transaction hash
+     * @throws TransactionRejectedException if the node rejected the transaction, for example because of a wrong nonce
+     * @throws RuntimeException if it is unknown whether the transaction was broadcast, e.g. on a timeout
+     */
+    byte[] sendTransaction(Address from, long nonce, byte[] txData);
+
+    /**
+     * Sign and send a transaction which has no effect, e.g. a zero value transfer to the sender itself. Used to fill the
+     * nonce of a transaction which was dropped, so that the operator's later transactions can be included.
+     * @param from operator account
+     * @param nonce nonce to fill
+     * @return transaction hash
+     * @throws TransactionRejectedException if the node rejected the transaction
+     * @throws RuntimeException if it is unknown whether the transaction was broadcast
+     */
+    byte[] sendNoOp(Address from, long nonce);
+
+    /**
+     * Get the result of a transaction
+     * @param txHash transaction hash
+     * @return result, or null if the transaction isn't included in the chain yet
+     */
+    CallResult getReceipt(byte[] txHash);
+}
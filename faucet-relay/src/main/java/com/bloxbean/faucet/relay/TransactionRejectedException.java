@@ -0,0 +1,16 @@
+package com.bloxbean.faucet.relay;
+
+/**
+ * Thrown by {@link TransactionChainClient} when the node refused a transaction, so it is known not to be broadcast
+ * and can't be included. Any other failure of a send leaves it open whether the transaction was broadcast.
+ */
+public class TransactionRejectedException extends RelayException {
+
+    public TransactionRejectedException(String message) {
+        super(message);
+    }
+
+    public TransactionRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,15 @@
+package com.bloxbean.faucet.relay;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends a faucet contract call from an operator account
+ */
+public interface TransactionSender {
+
+    /**
+     * @param txData ABI encoded method call
+     * @return completed with the transaction's result once it is included in the chain
+     */
+    CompletableFuture<CallResult> send(byte[] txData);
+}
@@ -0,0 +1,35 @@
+package com.bloxbean.faucet.relay;
+
+import avm.Address;
+import org.aion.avm.embed.AvmRule;
+import org.aion.types.TransactionResult;
+
+import java.math.BigInteger;
+
+/**
+ * {@link ChainClient} backed by the embedded AVM of an {@link AvmRule}. Each call is executed in a new block.
+ */
+public class AvmChainClient implements ChainClient {
+    private static final long ENERGY_LIMIT = 5_000_000L;
+    private static final long ENERGY_PRICE = 1L;
+
+    private final AvmRule avmRule;
+    private final Address dappAddr;
+
+    public AvmChainClient(AvmRule avmRule, Address dappAddr) {
+        this.avmRule = avmRule;
+        this.dappAddr = dappAddr;
+    }
+
+    @Override
+    public synchronized CallResult call(Address operator, byte[] txData) {
+        AvmRule.ResultWrapper result = avmRule.call(operator, dappAddr, BigInteger.ZERO, txData, ENERGY_LIMIT, ENERGY_PRICE);
+        avmRule.kernel.generateBlock();
+
+        TransactionResult transactionResult = result.getTransactionResult();
+        if (result.getReceiptStatus().isSuccess())
+            return CallResult.success(transactionResult.copyOfTransactionOutput().orElse(new byte[0]), transactionResult.energyUsed);
+        else
+            return CallResult.failure(String.valueOf(result.getReceiptStatus()), transactionResult.energyUsed);
+    }
+}
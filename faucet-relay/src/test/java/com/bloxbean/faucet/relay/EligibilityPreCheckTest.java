@@ -0,0 +1,125 @@
+package com.bloxbean.faucet.relay;
+
+import avm.Address;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class EligibilityPreCheckTest {
+    private static BigInteger ONE_AION = new BigInteger("1000000000000000000");
+
+    private static Address dev1 = address(1);
+    private static Address dev2 = address(2);
+
+    @Test
+    public void whenNotRegisteredThenTopUpRejected() {
+        EligibilityPreCheck preCheck = new EligibilityPreCheck(3, 2, 1000);
+        preCheck.applyBlock(10, Collections.singletonList(event("AddressRegistered", dev1, 10)));
+
+        Assert.assertEquals(EligibilityPreCheck.Result.ACCEPTED, preCheck.checkTopUp(dev1));
+        Assert.assertEquals(EligibilityPreCheck.Result.NOT_REGISTERED, preCheck.checkTopUp(dev2));
+    }
+
+    @Test
+    public void whenRegisteredThenRegistrationRejected() {
+        EligibilityPreCheck preCheck = new EligibilityPreCheck(3, 2, 1000);
+        preCheck.applyBlock(10, Collections.singletonList(event("AddressRegistered", dev1, 10)));
+
+        Assert.assertEquals(EligibilityPreCheck.Result.ALREADY_REGISTERED, preCheck.checkRegistration(dev1));
+        Assert.assertEquals(EligibilityPreCheck.Result.ACCEPTED, preCheck.checkRegistration(dev2));
+    }
+
+    @Test
+    public void whenNoTokensLeftThenTopUpRejectedUntilRefilled() {
+        EligibilityPreCheck preCheck = preCheck(1);
+        preCheck.applyBlock(10, Collections.singletonList(event("AddressRegistered", dev1, 10)));
+        preCheck.applyBlock(11, Arrays.asList(event("TopUp", dev1, 11), event("TopUp", dev1, 11), event("TopUp", dev1, 11)));
+
+        Assert.assertEquals(EligibilityPreCheck.Result.COOLDOWN, preCheck.checkTopUp(dev1));
+
+        preCheck.setCurrentBlock(13);
+        Assert.assertEquals(EligibilityPreCheck.Result.ACCEPTED, preCheck.checkTopUp(dev1));
+    }
+
+    @Test
+    public void whenTokenRefillsBeforeInclusionThenTopUpAccepted() {
+        EligibilityPreCheck preCheck = preCheck(5);
+        preCheck.applyBlock(10, Collections.singletonList(event("AddressRegistered", dev1, 10)));
+        preCheck.applyBlock(11, Arrays.asList(event("TopUp", dev1, 11), event("TopUp", dev1, 11), event("TopUp", dev1, 11)));
+
+        //A token refills at block 13, after the next block but before the request's last inclusion block 16
+        Assert.assertEquals(EligibilityPreCheck.Result.ACCEPTED, preCheck.checkTopUp(dev1));
+
+        //No token refills within the horizon
+        EligibilityPreCheck slowRefill = new EligibilityPreCheck(3, 10, 5, 1000,
+                EligibilityPreCheck.DEFAULT_FALSE_POSITIVE_RATE, EligibilityPreCheck.DEFAULT_CACHE_SIZE);
+        slowRefill.applyBlock(10, Collections.singletonList(event("AddressRegistered", dev1, 10)));
+        slowRefill.applyBlock(11, Arrays.asList(event("TopUp", dev1, 11), event("TopUp", dev1, 11), event("TopUp", dev1, 11)));
+
+        Assert.assertEquals(EligibilityPreCheck.Result.COOLDOWN, slowRefill.checkTopUp(dev1));
+    }
+
+    @Test
+    public void whenTopUpsOfUnseenRegistrationThenTopUpNotRejected() {
+        EligibilityPreCheck preCheck = preCheck(1);
+        preCheck.applyBlock(11, Arrays.asList(event("TopUp", dev1, 11), event("TopUp", dev1, 11), event("TopUp", dev1, 11)));
+
+        //The tokens before the first topup are unknown
+        Assert.assertEquals(EligibilityPreCheck.Result.ACCEPTED, preCheck.checkTopUp(dev1));
+        Assert.assertEquals(EligibilityPreCheck.Result.ALREADY_REGISTERED, preCheck.checkRegistration(dev1));
+    }
+
+    @Test
+    public void whenWarmedUpFromIndexThenRegisteredAddressesKnown() {
+        RecipientIndex index = new RecipientIndex(3, 2);
+        index.applyBlock(10, Collections.singletonList(event("AddressRegistered", dev1, 10)));
+
+        EligibilityPreCheck preCheck = new EligibilityPreCheck(3, 2, 1000);
+        preCheck.warmUp(index);
+
+        Assert.assertEquals(EligibilityPreCheck.Result.ACCEPTED, preCheck.checkTopUp(dev1));
+        Assert.assertEquals(EligibilityPreCheck.Result.ALREADY_REGISTERED, preCheck.checkRegistration(dev1));
+        Assert.assertEquals(EligibilityPreCheck.Result.NOT_REGISTERED, preCheck.checkTopUp(dev2));
+    }
+
+    @Test
+    public void whenBloomFilterFilledThenNoFalseNegativesAndFewFalsePositives() {
+        AddressBloomFilter filter = new AddressBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++)
+            filter.add(address(i));
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            Assert.assertTrue(filter.mightContain(address(i)));
+            if (filter.mightContain(address(100_000 + i)))
+                falsePositives++;
+        }
+        Assert.assertTrue("False positives: " + falsePositives, falsePositives < 300);
+    }
+
+    private static EligibilityPreCheck preCheck(long inclusionBlocks) {
+        return new EligibilityPreCheck(3, 2, inclusionBlocks, 1000,
+                EligibilityPreCheck.DEFAULT_FALSE_POSITIVE_RATE, EligibilityPreCheck.DEFAULT_CACHE_SIZE);
+    }
+
+    private static FaucetLog event(String name, Address address, long blockNumber) {
+        byte[] amountBytes = ONE_AION.toByteArray();
+        ByteBuffer data = ByteBuffer.allocate(1 + 32 + Long.BYTES);
+        data.put((byte) 2);
+        data.position(1 + 32 - amountBytes.length);
+        data.put(amountBytes);
+        data.putLong(blockNumber);
+        return new FaucetLog(blockNumber, Arrays.asList(Arrays.copyOf(name.getBytes(), 32), address.toByteArray()), data.array());
+    }
+
+    private static Address address(int index) {
+        byte[] bytes = new byte[Address.LENGTH];
+        bytes[0] = (byte) 0xa0;
+        ByteBuffer.wrap(bytes, 28, 4).putInt(index);
+        return new Address(bytes);
+    }
+}
@@ -0,0 +1,171 @@
+package com.bloxbean.faucet.relay;
+
+import avm.Address;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory {@link TransactionChainClient}. Sent transactions wait in a mempool until {@link #mineBlock()} includes them
+ * in nonce order. Of several transactions with the same nonce, the one sent first is included and the others are
+ * discarded, as on a real chain only one of them can be. Transactions can be dropped, rejected or time out, receipts
+ * delayed and the chain made unreachable on purpose to test recovery.
+ */
+public class FakeTransactionChain implements TransactionChainClient {
+    private static final byte[] NO_OP = new byte[0];
+
+    private final Map<Address, Long> nonces = new HashMap<>();
+    private final Map<Address, TreeMap<Long, List<PendingTransaction>>> mempool = new HashMap<>();
+    private final Map<BigInteger, CallResult> receipts = new HashMap<>();
+    private final Map<BigInteger, CallResult> delayedReceipts = new HashMap<>();
+    private final Map<Address, Integer> sentCount = new HashMap<>();
+    private final List<byte[]> included = new ArrayList<>();
+
+    private long txCounter;
+    private int dropCount;
+    private int rejectCount;
+    private int timeoutCount;
+    private boolean delayReceipts;
+    private boolean unreachable;
+
+    @Override
+    public synchronized long getNonce(Address account) {
+        checkReachable();
+        return nonces.getOrDefault(account, 0L);
+    }
+
+    @Override
+    public synchronized byte[] sendTransaction(Address from, long nonce, byte[] txData) {
+        checkReachable();
+        if (rejectCount > 0) {
+            rejectCount--;
+            throw new TransactionRejectedException("Transaction rejected");
+        }
+        if (nonce < getNonce(from))
+            throw new TransactionRejectedException("Nonce too low");
+
+        BigInteger txHash = BigInteger.valueOf(++txCounter);
+        sentCount.merge(from, 1, Integer::sum);
+
+        if (dropCount > 0)
+            dropCount--;
+        else
+            mempool.computeIfAbsent(from, a -> new TreeMap<>())
+                    .computeIfAbsent(nonce, n -> new ArrayList<>())
+                    .add(new PendingTransaction(txHash, txData));
+
+        if (timeoutCount > 0) {
+            timeoutCount--;
+            throw new IllegalStateException("Timeout");
+        }
+        return txHash.toByteArray();
+    }
+
+    @Override
+    public synchronized byte[] sendNoOp(Address from, long nonce) {
+        return sendTransaction(from, nonce, NO_OP);
+    }
+
+    @Override
+    public synchronized CallResult getReceipt(byte[] txHash) {
+        checkReachable();
+        return receipts.get(new BigInteger(txHash));
+    }
+
+    /**
+     * Include all transactions which have no nonce gap before them
+     * @return no of included transactions
+     */
+    public synchronized int mineBlock() {
+        int mined = 0;
+        for (Map.Entry<Address, TreeMap<Long, List<PendingTransaction>>> entry : mempool.entrySet()) {
+            Address account = entry.getKey();
+            TreeMap<Long, List<PendingTransaction>> transactions = entry.getValue();
+
+            long nonce = nonces.getOrDefault(account, 0L);
+            while (transactions.containsKey(nonce)) {
+                PendingTransaction tx = transactions.remove(nonce).get(0);
+                (delayReceipts ? delayedReceipts : receipts).put(tx.txHash, CallResult.success(new byte[0], 21000));
+                included.add(tx.txData);
+                nonce++;
+                mined++;
+            }
+            transactions.headMap(nonce).clear();
+            nonces.put(account, nonce);
+        }
+        return mined;
+    }
+
+    /**
+     * Accept the next transactions, but never include them
+     */
+    public synchronized void dropNextTransactions(int count) {
+        dropCount = count;
+    }
+
+    public synchronized void rejectNextTransactions(int count) {
+        rejectCount = count;
+    }
+
+    /**
+     * Accept the next transactions, but fail their send as if the response was lost. Combined with
+     * {@link #dropNextTransactions(int)}, the transactions are lost before the node accepted them.
+     */
+    public synchronized void timeoutNextTransactions(int count) {
+        timeoutCount = count;
+    }
+
+    /**
+     * Fail all calls of the client, e.g. because the node is down
+     */
+    public synchronized void setUnreachable(boolean unreachable) {
+        this.unreachable = unreachable;
+    }
+
+    /**
+     * Include transactions without making their receipts available until delay is turned off
+     */
+    public synchronized void setDelayReceipts(boolean delay) {
+        delayReceipts = delay;
+        if (!delay) {
+            receipts.putAll(delayedReceipts);
+            delayedReceipts.clear();
+        }
+    }
+
+    public synchronized int getSentCount(Address account) {
+        return sentCount.getOrDefault(account, 0);
+    }
+
+    /**
+     * @return no of included transactions with this payload. No-ops have an empty payload.
+     */
+    public synchronized int getIncludedCount(byte[] txData) {
+        int count = 0;
+        for (byte[] data : included) {
+            if (Arrays.equals(data, txData))
+                count++;
+        }
+        return count;
+    }
+
+    private void checkReachable() {
+        if (unreachable)
+            throw new IllegalStateException("Connection refused");
+    }
+
+    private static class PendingTransaction {
+        private final BigInteger txHash;
+        private final byte[] txData;
+
+        private PendingTransaction(BigInteger txHash, byte[] txData) {
+            this.txHash = txHash;
+            this.txData = txData;
+        }
+    }
+}
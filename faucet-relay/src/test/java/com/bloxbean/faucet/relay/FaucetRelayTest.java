@@ -0,0 +1,159 @@
+package com.bloxbean.faucet.relay;
+
+import avm.Address;
+import com.bloxbean.contracts.AionFaucetContract;
+import com.bloxbean.contracts.FaucetEvent;
+import com.bloxbean.contracts.StorageCodec;
+import com.bloxbean.contracts.StorageKeys;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.embed.AvmRule;
+import org.aion.avm.tooling.ABIUtil;
+import org.aion.avm.userlib.AionMap;
+import org.aion.avm.userlib.AionSet;
+import org.aion.types.AionAddress;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+public class FaucetRelayTest {
+    private static BigInteger DEFAULT_INITIAL_TOPUP_AMOUNT = new BigInteger("500000000000000000"); //0.5 Aion
+    private static BigInteger ONE_AION = new BigInteger("1000000000000000000");
+
+    @Rule
+    public AvmRule avmRule = new AvmRule(false);
+
+    private static Address owner = new Address(Helpers.hexStringToBytes("0xa0b5410b6ce75a2880d7e11e74f2b3832579f6813da41af59c931a0ea55414d4"));
+    private static Address operator = new Address(Helpers.hexStringToBytes("0xa0baf37224a9eacde5c308161298afed14003d99ddb59bb784fc22a2d1d02fc8"));
+    private static Address dev1 = new Address(Helpers.hexStringToBytes("0xa0a0228985614e6368eacfaf01436ddb68c67389c2f5830c95da570594a42da3"));
+    private static Address dev2 = new Address(Helpers.hexStringToBytes("0xa0c606b925377d66b087d406eceed90995e17eab443b3e6211cc2b54b9f89aa6"));
+
+    private Address from = avmRule.getPreminedAccount();
+    private Address dappAddr;
+
+    @Before
+    public void deployDapp() {
+        byte[] deploymentArgs = ABIUtil.encodeDeploymentArguments(owner);
+        byte[] dapp = avmRule.getDappBytes(AionFaucetContract.class, deploymentArgs, 1, FaucetEvent.class, StorageKeys.class, StorageCodec.class, AionMap.class, AionSet.class);
+        dappAddr = avmRule.deploy(from, BigInteger.ZERO, dapp).getDappAddress();
+
+        avmRule.kernel.adjustBalance(new AionAddress(from.toByteArray()), new BigInteger("6000000000000000000000"));
+        Assert.assertTrue(avmRule.balanceTransfer(from, dappAddr, new BigInteger("500000000000000000000"), 2000000L, 1L)
+                .getReceiptStatus().isSuccess());
+
+        avmRule.kernel.adjustBalance(new AionAddress(owner.toByteArray()), new BigInteger("100000000000000000"));
+
+        byte[] txData = ABIUtil.encodeMethodArguments("addOperator", operator);
+        Assert.assertTrue(avmRule.call(owner, dappAddr, BigInteger.ZERO, txData).getReceiptStatus().isSuccess());
+    }
+
+    @Test
+    public void whenRequestsQueuedThenSubmittedAsBatchesOnFlush() throws Exception {
+        FaucetRelay relay = new FaucetRelay(new AvmChainClient(avmRule, dappAddr), operator);
+
+        CompletableFuture<Boolean> registered1 = relay.register(dev1);
+        CompletableFuture<Boolean> registered2 = relay.register(dev2);
+        CompletableFuture<Boolean> toppedUp = relay.topUp(dev1);
+
+        Assert.assertEquals(2, relay.getQueuedRegistrations());
+        Assert.assertEquals(1, relay.getQueuedTopups());
+
+        //One registerAddresses and one topUpAddresses transaction
+        Assert.assertEquals(2, relay.flush());
+
+        Assert.assertTrue(registered1.get());
+        Assert.assertTrue(registered2.get());
+        Assert.assertTrue(toppedUp.get());
+
+        Assert.assertEquals(DEFAULT_INITIAL_TOPUP_AMOUNT.add(ONE_AION), getBalance(dev1));
+        Assert.assertEquals(DEFAULT_INITIAL_TOPUP_AMOUNT, getBalance(dev2));
+        Assert.assertEquals(0, relay.getQueuedRegistrations());
+    }
+
+    @Test
+    public void whenMoreRequestsThanBatchSizeThenSplitIntoMultipleTransactions() throws Exception {
+        FaucetRelay relay = new FaucetRelay(new AvmChainClient(avmRule, dappAddr), operator, 1000, 4, 100);
+
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            futures.add(relay.register(recipient(i)));
+
+        Assert.assertEquals(3, relay.flush());
+
+        for (CompletableFuture<Boolean> future : futures)
+            Assert.assertTrue(future.get());
+    }
+
+    @Test
+    public void whenAlreadyRegisteredThenCompletedWithFalse() throws Exception {
+        FaucetRelay relay = new FaucetRelay(new AvmChainClient(avmRule, dappAddr), operator);
+
+        CompletableFuture<Boolean> first = relay.register(dev1);
+        CompletableFuture<Boolean> second = relay.register(dev1);
+        relay.flush();
+
+        Assert.assertTrue(first.get());
+        Assert.assertFalse(second.get());
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void whenTransactionFailsThenCompletedExceptionally() throws Exception {
+        //dev2 is not an operator
+        FaucetRelay relay = new FaucetRelay(new AvmChainClient(avmRule, dappAddr), dev2);
+
+        CompletableFuture<Boolean> registered = relay.register(dev1);
+        relay.flush();
+
+        registered.get();
+    }
+
+    @Test
+    public void whenQueueIsFullThenRequestRejected() {
+        FaucetRelay relay = new FaucetRelay(new AvmChainClient(avmRule, dappAddr), operator, 1000, 10, 1);
+
+        relay.register(dev1);
+        CompletableFuture<Boolean> rejected = relay.register(dev2);
+
+        Assert.assertTrue(rejected.isCompletedExceptionally());
+    }
+
+    @Test
+    public void givenPreCheckWhenTopUpOfUnregisteredAddressThenRejectedWithoutTransaction() {
+        FaucetRelay relay = new FaucetRelay(new AvmChainClient(avmRule, dappAddr), operator);
+        relay.setPreCheck(new EligibilityPreCheck(AionFaucetContract.MAX_NO_OF_TRIES, 8640 / AionFaucetContract.MAX_NO_OF_TRIES, 1000));
+
+        CompletableFuture<Boolean> toppedUp = relay.topUp(dev1);
+
+        Assert.assertTrue(toppedUp.isCompletedExceptionally());
+        Assert.assertEquals(0, relay.getQueuedTopups());
+        Assert.assertEquals(0, relay.flush());
+    }
+
+    @Test
+    public void whenStartedThenQueuedRequestsSubmittedPeriodically() throws Exception {
+        FaucetRelay relay = new FaucetRelay(new AvmChainClient(avmRule, dappAddr), operator, 50, 10, 100);
+        relay.start();
+        try {
+            Assert.assertTrue(relay.register(dev1).get());
+        } finally {
+            relay.stop();
+        }
+    }
+
+    private BigInteger getBalance(Address address) {
+        return avmRule.kernel.getBalance(new AionAddress(address.toByteArray()));
+    }
+
+    private static Address recipient(int index) {
+        byte[] bytes = new byte[Address.LENGTH];
+        bytes[0] = (byte) 0xa0;
+        bytes[31] = (byte) index;
+        return new Address(bytes);
+    }
+}
@@ -0,0 +1,237 @@
+package com.bloxbean.faucet.relay;
+
+import avm.Address;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class PipelinedSubmitterTest {
+    private static Address operator1 = operator(1);
+    private static Address operator2 = operator(2);
+    private static Address operator3 = operator(3);
+
+    private FakeTransactionChain chain = new FakeTransactionChain();
+
+    @Test
+    public void whenTransactionsSentThenSpreadOverOperatorsWithoutWaitingForReceipts() {
+        PipelinedSubmitter submitter = new PipelinedSubmitter(chain, Arrays.asList(operator1, operator2, operator3),
+                2, 1000, 60_000, 3);
+
+        List<CompletableFuture<CallResult>> futures = send(submitter, 10);
+
+        Assert.assertEquals(6, submitter.getInFlightCount());
+        Assert.assertEquals(4, submitter.getPendingCount());
+        Assert.assertEquals(2, chain.getSentCount(operator1));
+        Assert.assertEquals(2, chain.getSentCount(operator2));
+        Assert.assertEquals(2, chain.getSentCount(operator3));
+
+        Assert.assertEquals(6, chain.mineBlock());
+        submitter.poll();
+        Assert.assertEquals(4, submitter.getInFlightCount());
+        Assert.assertEquals(0, submitter.getPendingCount());
+
+        Assert.assertEquals(4, chain.mineBlock());
+        submitter.poll();
+
+        for (CompletableFuture<CallResult> future : futures)
+            Assert.assertTrue(future.join().isSuccess());
+        Assert.assertEquals(0, submitter.getInFlightCount());
+    }
+
+    @Test
+    public void whenTransactionDroppedThenResentWithSameNonce() {
+        PipelinedSubmitter submitter = new PipelinedSubmitter(chain, Arrays.asList(operator1), 4, 1000, 0, 3);
+
+        chain.dropNextTransactions(1);
+        List<CompletableFuture<CallResult>> futures = send(submitter, 3);
+
+        //Nonce 0 is missing. Later transactions are stuck.
+        Assert.assertEquals(0, chain.mineBlock());
+
+        submitter.poll();
+        Assert.assertEquals(3, chain.mineBlock());
+        submitter.poll();
+
+        for (CompletableFuture<CallResult> future : futures)
+            Assert.assertTrue(future.join().isSuccess());
+        Assert.assertEquals(4, chain.getSentCount(operator1));
+    }
+
+    @Test
+    public void whenTransactionDroppedBeyondRetriesThenNonceFilledAndEachSubmissionIncludedOnce() {
+        PipelinedSubmitter submitter = new PipelinedSubmitter(chain, Arrays.asList(operator1), 4, 1000, 0, 0);
+
+        chain.dropNextTransactions(1);
+        List<CompletableFuture<CallResult>> futures = send(submitter, 3);
+
+        //Nonce 0 is filled with a no-op. Later transactions keep their nonces.
+        submitter.poll();
+        Assert.assertEquals(3, chain.mineBlock());
+        submitter.poll();
+
+        Assert.assertTrue(futures.get(0).isCompletedExceptionally());
+        Assert.assertTrue(futures.get(1).join().isSuccess());
+        Assert.assertTrue(futures.get(2).join().isSuccess());
+
+        Assert.assertEquals(0, chain.getIncludedCount(new byte[]{0}));
+        Assert.assertEquals(1, chain.getIncludedCount(new byte[]{1}));
+        Assert.assertEquals(1, chain.getIncludedCount(new byte[]{2}));
+        Assert.assertEquals(1, chain.getIncludedCount(new byte[0]));
+        Assert.assertEquals(4, chain.getSentCount(operator1));
+        Assert.assertEquals(0, submitter.getInFlightCount());
+    }
+
+    @Test
+    public void whenStuckTransactionIncludedAfterNoOpSentThenCompletedOnce() {
+        PipelinedSubmitter submitter = new PipelinedSubmitter(chain, Arrays.asList(operator1), 4, 1000, 0, 0);
+
+        CompletableFuture<CallResult> future = submitter.send(new byte[]{1});
+        submitter.poll();
+        Assert.assertEquals(2, chain.getSentCount(operator1));
+
+        //The original transaction is still in the mempool and wins the nonce
+        Assert.assertEquals(1, chain.mineBlock());
+        submitter.poll();
+
+        Assert.assertTrue(future.join().isSuccess());
+        Assert.assertEquals(1, chain.getIncludedCount(new byte[]{1}));
+        Assert.assertEquals(0, chain.getIncludedCount(new byte[0]));
+    }
+
+    @Test
+    public void whenReceiptsLateThenTransactionsNotResent() {
+        PipelinedSubmitter submitter = new PipelinedSubmitter(chain, Arrays.asList(operator1), 4, 1000, 0, 3);
+
+        chain.setDelayReceipts(true);
+        List<CompletableFuture<CallResult>> futures = send(submitter, 3);
+        Assert.assertEquals(3, chain.mineBlock());
+
+        //Nonces are used, but no receipt yet
+        submitter.poll();
+        submitter.poll();
+        Assert.assertEquals(3, submitter.getInFlightCount());
+        Assert.assertEquals(0, submitter.getPendingCount());
+
+        chain.setDelayReceipts(false);
+        submitter.poll();
+
+        for (int i = 0; i < futures.size(); i++) {
+            Assert.assertTrue(futures.get(i).join().isSuccess());
+            Assert.assertEquals(1, chain.getIncludedCount(new byte[]{(byte) i}));
+        }
+        Assert.assertEquals(3, chain.getSentCount(operator1));
+    }
+
+    @Test
+    public void whenSendTimesOutAfterBroadcastThenNotSentThroughAnotherOperator() {
+        PipelinedSubmitter submitter = new PipelinedSubmitter(chain, Arrays.asList(operator1, operator2), 4, 1000, 0, 1);
+
+        chain.timeoutNextTransactions(1);
+        CompletableFuture<CallResult> future = submitter.send(new byte[]{1});
+        Assert.assertEquals(1, submitter.getInFlightCount());
+        Assert.assertEquals(0, submitter.getPendingCount());
+
+        Assert.assertEquals(1, chain.mineBlock());
+        submitter.poll();
+        submitter.poll();
+
+        //Included, but without a hash its receipt can't be found
+        Assert.assertTrue(future.isCompletedExceptionally());
+        Assert.assertEquals(1, chain.getIncludedCount(new byte[]{1}));
+        Assert.assertEquals(1, chain.getSentCount(operator1));
+        Assert.assertEquals(0, chain.getSentCount(operator2));
+    }
+
+    @Test
+    public void whenSendTimesOutBeforeBroadcastThenResentWithSameNonce() {
+        PipelinedSubmitter submitter = new PipelinedSubmitter(chain, Arrays.asList(operator1, operator2), 4, 1000, 0, 3);
+
+        chain.dropNextTransactions(1);
+        chain.timeoutNextTransactions(1);
+        CompletableFuture<CallResult> future = submitter.send(new byte[]{1});
+
+        submitter.poll();
+        Assert.assertEquals(1, chain.mineBlock());
+        submitter.poll();
+
+        Assert.assertTrue(future.join().isSuccess());
+        Assert.assertEquals(1, chain.getIncludedCount(new byte[]{1}));
+        Assert.assertEquals(2, chain.getSentCount(operator1));
+        Assert.assertEquals(0, chain.getSentCount(operator2));
+    }
+
+    @Test
+    public void whenChainUnreachableBeyondRetriesThenInFlightTransactionsFailed() {
+        PipelinedSubmitter submitter = new PipelinedSubmitter(chain, Arrays.asList(operator1), 4, 1000, 60_000, 2);
+
+        CompletableFuture<CallResult> future = submitter.send(new byte[]{1});
+        chain.setUnreachable(true);
+
+        submitter.poll();
+        submitter.poll();
+        Assert.assertFalse(future.isDone());
+
+        submitter.poll();
+        Assert.assertTrue(future.isCompletedExceptionally());
+        Assert.assertEquals(0, submitter.getInFlightCount());
+        Assert.assertNotNull(submitter.getLastError());
+    }
+
+    @Test
+    public void whenChainUnreachableBeyondRetriesThenPendingTransactionsFailed() {
+        PipelinedSubmitter submitter = new PipelinedSubmitter(chain, Arrays.asList(operator1), 4, 1000, 60_000, 2);
+
+        chain.setUnreachable(true);
+        CompletableFuture<CallResult> future = submitter.send(new byte[]{1});
+
+        submitter.poll();
+        Assert.assertFalse(future.isDone());
+        Assert.assertEquals(1, submitter.getPendingCount());
+
+        submitter.poll();
+        Assert.assertTrue(future.isCompletedExceptionally());
+        Assert.assertEquals(0, submitter.getPendingCount());
+        Assert.assertNotNull(submitter.getLastError());
+    }
+
+    @Test
+    public void whenTransactionRejectedThenRetried() {
+        PipelinedSubmitter submitter = new PipelinedSubmitter(chain, Arrays.asList(operator1), 4, 1000, 60_000, 3);
+
+        chain.rejectNextTransactions(2);
+        CompletableFuture<CallResult> future = submitter.send(new byte[]{1});
+
+        chain.mineBlock();
+        submitter.poll();
+
+        Assert.assertTrue(future.join().isSuccess());
+    }
+
+    @Test
+    public void whenTransactionRejectedBeyondRetriesThenFailed() {
+        PipelinedSubmitter submitter = new PipelinedSubmitter(chain, Arrays.asList(operator1), 4, 1000, 60_000, 1);
+
+        chain.rejectNextTransactions(5);
+        CompletableFuture<CallResult> future = submitter.send(new byte[]{1});
+
+        Assert.assertTrue(future.isCompletedExceptionally());
+    }
+
+    private static List<CompletableFuture<CallResult>> send(PipelinedSubmitter submitter, int count) {
+        List<CompletableFuture<CallResult>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            futures.add(submitter.send(new byte[]{(byte) i}));
+        return futures;
+    }
+
+    private static Address operator(int index) {
+        byte[] bytes = new byte[Address.LENGTH];
+        bytes[0] = (byte) 0xa0;
+        bytes[31] = (byte) index;
+        return new Address(bytes);
+    }
+}
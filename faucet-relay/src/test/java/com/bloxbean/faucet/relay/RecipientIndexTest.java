@@ -0,0 +1,180 @@
+package com.bloxbean.faucet.relay;
+
+import avm.Address;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class RecipientIndexTest {
+    private static BigInteger ONE_AION = new BigInteger("1000000000000000000");
+    private static BigInteger INITIAL_TOPUP_AMOUNT = new BigInteger("500000000000000000");
+
+    private static Address operator = address(1000);
+    private static Address dev1 = address(1);
+    private static Address dev2 = address(2);
+
+    @Test
+    public void whenRegisteredAndToppedUpThenIndexed() {
+        RecipientIndex index = new RecipientIndex(3, 2);
+
+        index.applyBlock(10, Arrays.asList(operatorEvent("OperatorAdded", operator, 10),
+                amountEvent("AddressRegistered", dev1, INITIAL_TOPUP_AMOUNT, 10)));
+        index.applyBlock(11, Collections.singletonList(amountEvent("TopUp", dev1, ONE_AION, 11)));
+
+        Assert.assertTrue(index.isOperator(operator));
+        Assert.assertTrue(index.isRegistered(dev1));
+        Assert.assertFalse(index.isRegistered(dev2));
+        Assert.assertEquals(INITIAL_TOPUP_AMOUNT.add(ONE_AION), index.getTotal(dev1));
+        Assert.assertEquals(11, index.getLastRequestBlockNo(dev1));
+        Assert.assertEquals(1, index.getRetryCount(dev1));
+        Assert.assertEquals(-1, index.getRetryCount(dev2));
+    }
+
+    @Test
+    public void whenNoTokensLeftThenCanTopUpAfterRefill() {
+        RecipientIndex index = new RecipientIndex(3, 2);
+        index.applyBlock(10, Collections.singletonList(amountEvent("AddressRegistered", dev1, INITIAL_TOPUP_AMOUNT, 10)));
+        index.applyBlock(11, Arrays.asList(amountEvent("TopUp", dev1, ONE_AION, 11),
+                amountEvent("TopUp", dev1, ONE_AION, 11), amountEvent("TopUp", dev1, ONE_AION, 11)));
+
+        Assert.assertFalse(index.canTopUp(dev1, 12));
+        Assert.assertTrue(index.canTopUp(dev1, 14));
+        Assert.assertFalse(index.canTopUp(dev2, 14));
+    }
+
+    @Test
+    public void whenLegacyEventsThenIndexed() {
+        RecipientIndex index = new RecipientIndex(3, 2);
+
+        index.applyBlock(10, Arrays.asList(new FaucetLog(10, Collections.singletonList(topic("OperatorAdded")), operator.toByteArray()),
+                new FaucetLog(10, Collections.singletonList(topic("AddressRegistered")), dev1.toByteArray())));
+        index.applyBlock(11, Collections.singletonList(new FaucetLog(11, Arrays.asList(topic("TopUp"), dev1.toByteArray()),
+                ONE_AION.toString().getBytes())));
+
+        Assert.assertTrue(index.isOperator(operator));
+        Assert.assertTrue(index.isRegistered(dev1));
+        Assert.assertEquals(ONE_AION, index.getTotal(dev1));
+        Assert.assertFalse(index.isTotalKnown(dev1));
+        Assert.assertTrue(index.isTokenBucketKnown(dev1));
+        Assert.assertEquals(1, index.getRetryCount(dev1));
+    }
+
+    @Test
+    public void whenBlockAlreadyProcessedThenIgnored() {
+        RecipientIndex index = new RecipientIndex(3, 2);
+        index.applyBlock(10, Collections.singletonList(amountEvent("AddressRegistered", dev1, INITIAL_TOPUP_AMOUNT, 10)));
+        index.applyBlock(11, Collections.singletonList(amountEvent("TopUp", dev1, ONE_AION, 11)));
+
+        Assert.assertFalse(index.applyBlock(11, Collections.singletonList(amountEvent("TopUp", dev1, ONE_AION, 11))));
+        Assert.assertEquals(INITIAL_TOPUP_AMOUNT.add(ONE_AION), index.getTotal(dev1));
+        Assert.assertEquals(11, index.getLastProcessedBlock());
+    }
+
+    @Test
+    public void whenManyRecipientsThenAllFound() {
+        RecipientIndex index = new RecipientIndex(3, 2);
+        for (int i = 0; i < 10_000; i++)
+            index.applyBlock(i, Collections.singletonList(amountEvent("AddressRegistered", address(i), BigInteger.valueOf(i), i)));
+
+        Assert.assertEquals(10_000, index.getRecipientCount());
+        for (int i = 0; i < 10_000; i++)
+            Assert.assertEquals(BigInteger.valueOf(i), index.getTotal(address(i)));
+        Assert.assertFalse(index.isRegistered(address(10_001)));
+    }
+
+    @Test
+    public void whenTotalExceedsLongThenExact() {
+        RecipientIndex index = new RecipientIndex(3, 2);
+        BigInteger amount = ONE_AION.multiply(BigInteger.valueOf(100));
+        index.applyBlock(10, Collections.singletonList(amountEvent("AddressRegistered", dev1, amount, 10)));
+        index.applyBlock(20, Collections.singletonList(amountEvent("TopUp", dev1, amount, 20)));
+
+        Assert.assertEquals(amount.add(amount), index.getTotal(dev1));
+    }
+
+    @Test
+    public void whenCheckpointRestoredThenSameState() throws Exception {
+        RecipientIndex index = new RecipientIndex(3, 2);
+        index.applyBlock(10, Arrays.asList(operatorEvent("OperatorAdded", operator, 10),
+                amountEvent("AddressRegistered", dev1, INITIAL_TOPUP_AMOUNT, 10),
+                amountEvent("AddressRegistered", dev2, INITIAL_TOPUP_AMOUNT, 10)));
+        index.applyBlock(11, Collections.singletonList(amountEvent("TopUp", dev1, ONE_AION, 11)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeCheckpoint(out);
+        RecipientIndex restored = RecipientIndex.readCheckpoint(new ByteArrayInputStream(out.toByteArray()), 3, 2);
+
+        Assert.assertEquals(11, restored.getLastProcessedBlock());
+        Assert.assertEquals(2, restored.getRecipientCount());
+        Assert.assertTrue(restored.isOperator(operator));
+        Assert.assertEquals(INITIAL_TOPUP_AMOUNT.add(ONE_AION), restored.getTotal(dev1));
+        Assert.assertEquals(1, restored.getRetryCount(dev1));
+        Assert.assertEquals(INITIAL_TOPUP_AMOUNT, restored.getTotal(dev2));
+
+        //Resume from the next block
+        restored.applyBlock(12, Collections.singletonList(amountEvent("TopUp", dev2, ONE_AION, 12)));
+        Assert.assertEquals(1, restored.getRetryCount(dev2));
+    }
+
+    @Test
+    public void whenCheckpointTakenMidStreamThenRecipientsFirstSeenInTopupsUnknown() throws Exception {
+        //The index starts after dev1's registration
+        RecipientIndex index = new RecipientIndex(3, 2);
+        index.applyBlock(11, Arrays.asList(amountEvent("TopUp", dev1, ONE_AION, 11), amountEvent("TopUp", dev1, ONE_AION, 11),
+                amountEvent("AddressRegistered", dev2, INITIAL_TOPUP_AMOUNT, 11)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeCheckpoint(out);
+        RecipientIndex restored = RecipientIndex.readCheckpoint(new ByteArrayInputStream(out.toByteArray()), 3, 2);
+        restored.applyBlock(12, Collections.singletonList(amountEvent("TopUp", dev1, ONE_AION, 12)));
+
+        Assert.assertTrue(restored.isRegistered(dev1));
+        Assert.assertFalse(restored.isTokenBucketKnown(dev1));
+        Assert.assertFalse(restored.isTotalKnown(dev1));
+        Assert.assertEquals(-1, restored.getRetryCount(dev1));
+        Assert.assertEquals(ONE_AION.multiply(BigInteger.valueOf(3)), restored.getTotal(dev1));
+        //Its tokens may be used up, which is left to the contract
+        Assert.assertTrue(restored.canTopUp(dev1, 12));
+
+        Assert.assertTrue(restored.isTokenBucketKnown(dev2));
+        Assert.assertTrue(restored.isTotalKnown(dev2));
+
+        EligibilityPreCheck preCheck = new EligibilityPreCheck(3, 2, 1000);
+        preCheck.warmUp(restored);
+        Assert.assertEquals(EligibilityPreCheck.Result.ACCEPTED, preCheck.checkTopUp(dev1));
+        Assert.assertEquals(EligibilityPreCheck.Result.ALREADY_REGISTERED, preCheck.checkRegistration(dev1));
+    }
+
+    private static FaucetLog amountEvent(String name, Address address, BigInteger amount, long blockNumber) {
+        byte[] amountBytes = amount.toByteArray();
+        ByteBuffer data = ByteBuffer.allocate(1 + 32 + Long.BYTES);
+        data.put((byte) 2);
+        data.position(1 + 32 - amountBytes.length);
+        data.put(amountBytes);
+        data.putLong(blockNumber);
+        return new FaucetLog(blockNumber, Arrays.asList(topic(name), address.toByteArray()), data.array());
+    }
+
+    private static FaucetLog operatorEvent(String name, Address address, long blockNumber) {
+        byte[] data = ByteBuffer.allocate(1 + Long.BYTES).put((byte) 2).putLong(blockNumber).array();
+        return new FaucetLog(blockNumber, Arrays.asList(topic(name), address.toByteArray()), data);
+    }
+
+    //Topics are padded to 32 bytes by the AVM
+    private static byte[] topic(String name) {
+        return Arrays.copyOf(name.getBytes(), 32);
+    }
+
+    private static Address address(int index) {
+        byte[] bytes = new byte[Address.LENGTH];
+        bytes[0] = (byte) 0xa0;
+        ByteBuffer.wrap(bytes, 28, 4).putInt(index);
+        return new Address(bytes);
+    }
+}
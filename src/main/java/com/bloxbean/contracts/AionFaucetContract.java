@@ -6,10 +6,8 @@ import avm.Result;
 import org.aion.avm.tooling.abi.Callable;
 import org.aion.avm.tooling.abi.Initializable;
 import org.aion.avm.userlib.AionBuffer;
-import org.aion.avm.userlib.AionSet;
 
 import java.math.BigInteger;
-import java.util.Set;
 
 import static avm.Blockchain.*;
 
@@ -21,12 +19,28 @@ import static avm.Blockchain.*;
 public class AionFaucetContract {
 
     public static final int MAX_NO_OF_TRIES = 3;
+    public static final int MAX_RATE_LIMIT_CAPACITY = 0xFFFF;
+    public static final int MAX_CLAIM_PROOF_LENGTH = 32;
+    public static final int MAX_OPERATOR_PAGE_SIZE = 100;
+
+    public static final int RECIPIENT_DETAILS_LENGTH = 1 + Integer.BYTES + Long.BYTES + 32;
+    public static final byte RECIPIENT_REGISTERED_FLAG = 1;
+    public static final byte RECIPIENT_CAN_REQUEST_FLAG = 2;
+
+    public static final int FAUCET_STATS_LENGTH = 7 * Long.BYTES + 2 * Integer.BYTES + 7 * 32;
+
+    private static final int ED25519_PUBLIC_KEY_LENGTH = 32;
+    private static final int ED25519_SIGNATURE_LENGTH = 64;
+
     @Initializable
     private static Address owner;
 
     private static BigInteger ONE_AION = new BigInteger("1000000000000000000"); //1 Aion
 
-    private static long minBlockNoDelay = 8640; //10sec per block. 24hr delay. 6 x 60 x 24
+    //Each recipient can request upto rateLimitCapacity topups. One topup is refilled every rateLimitRefillBlocks blocks.
+    //Default: MAX_NO_OF_TRIES topups in 24hr. 10sec per block, 6 x 60 x 24 = 8640 blocks
+    private static int rateLimitCapacity = MAX_NO_OF_TRIES;
+    private static long rateLimitRefillBlocks = 8640 / MAX_NO_OF_TRIES;
 
     private static BigInteger operatorThresholdBalance = new BigInteger("1000000000000000000"); //1 AION
     private static BigInteger operatorTransferBalance = new BigInteger("10000000000000000000"); //10    AION
@@ -40,17 +54,34 @@ public class AionFaucetContract {
     //An event will be thrown if contract's balance is less than contractMinimumBalance
     private static BigInteger contractMinimumBalance = new BigInteger("10000000000000000000"); //10 Aion
 
-    private static Set<Address> operators;
+    //Maximum amount paid out to recipients per window of disbursementWindowBlocks blocks. 0 means unlimited
+    private static BigInteger disbursementBudget = BigInteger.ZERO;
+    private static long disbursementWindowBlocks = 1;
+
+    //Merkle root of (address, amount) leaves which can be claimed with claim(). null if claims are disabled
+    private static byte[] claimRoot;
+
+    //Operators are stored as individual storage entries. See StorageKeys.operator and StorageKeys.operatorIndex
+    private static int operatorCount;
     private static long totalRecipients;
 
-    static {
-        operators = new AionSet<>();
-    }
+    //Running totals of successful registrations and topups
+    private static BigInteger totalDisbursed = BigInteger.ZERO;
+    private static long totalTopups;
+    private static long lastTopupBlockNo;
+
+    //Print diagnostic output of transfers. Off by default as it costs extra balance lookups and string building
+    private static boolean diagnostics;
 
     public static class AccountDetails {
-        private BigInteger total;
-        private long lastRequestBlockNo;
-        private int retryCount; //Total no of request in an allowed perid
+        BigInteger total;
+        long lastRequestBlockNo;
+        long tokenBucket; //Packed token bucket. See StorageCodec.packTokenBucket
+    }
+
+    private static class DisbursementWindow {
+        private long window;
+        private BigInteger spent;
     }
 
     /**
@@ -64,13 +95,15 @@ public class AionFaucetContract {
 
         onlyOwner();
         require(address != null);
-        require(!operators.contains(address));
+        byte[] operatorKey = StorageKeys.operator(address);
+        require(getStorage(operatorKey) == null);
 
-        operators.add(address);
-        if (Blockchain.getBalance(address).compareTo(operatorThresholdBalance) == -1) {
-            //transfer
-            Blockchain.call(address, operatorTransferBalance, new byte[0], getRemainingEnergy());
-        }
+        //Store operator's index for removal and the operator at that index for enumeration
+        putStorage(operatorKey, StorageCodec.encodeInt(operatorCount));
+        putStorage(StorageKeys.operatorIndex(operatorCount), StorageCodec.encodeAddress(address));
+        operatorCount++;
+
+        refillOperatorIfRequired(address);
 
         FaucetEvent.operatorAdded(address);
     }
@@ -83,9 +116,22 @@ public class AionFaucetContract {
     public static void removeOperator(Address address) {
         onlyOwner();
         require(address != null);
-        require(operators.contains(address));
+        byte[] operatorKey = StorageKeys.operator(address);
+        byte[] indexBytes = getStorage(operatorKey);
+        require(indexBytes != null);
+
+        //Move the last operator to the removed operator's index
+        int index = StorageCodec.decodeInt(indexBytes);
+        int lastIndex = operatorCount - 1;
+        if (index != lastIndex) {
+            byte[] lastOperator = getStorage(StorageKeys.operatorIndex(lastIndex));
+            putStorage(StorageKeys.operatorIndex(index), lastOperator);
+            putStorage(StorageKeys.operator(StorageCodec.decodeAddress(lastOperator)), indexBytes);
+        }
 
-        operators.remove(address);
+        putStorage(StorageKeys.operatorIndex(lastIndex), null);
+        putStorage(operatorKey, null);
+        operatorCount--;
 
         FaucetEvent.operatorRemoved(address);
     }
@@ -97,20 +143,51 @@ public class AionFaucetContract {
     @Callable
     public static Address[] getOperators() {
 
-        Address[] addresses = new Address[operators.size()];
+        Address[] addresses = new Address[operatorCount];
+
+        for (int i = 0; i < operatorCount; i++)
+            addresses[i] = StorageCodec.decodeAddress(getStorage(StorageKeys.operatorIndex(i)));
+
+        return addresses;
+    }
+
+    /**
+     * Get a page of current operators. Use {@link #getOperatorCount()} to get the total no of operators.
+     * @param offset index of the first operator
+     * @param limit maximum no of operators to return. Capped at MAX_OPERATOR_PAGE_SIZE
+     * @return operators from offset, empty if offset is beyond the last operator
+     */
+    @Callable
+    public static Address[] getOperatorsPage(int offset, int limit) {
+        require(offset >= 0 && limit >= 0);
+
+        int end = offset + Math.min(limit, MAX_OPERATOR_PAGE_SIZE);
+        if (end > operatorCount)
+            end = operatorCount;
+
+        if (offset >= end)
+            return new Address[0];
 
-        // Copying contents of s to arr[]
-        int i = 0;
-        for (Address a : operators)
-            addresses[i++] = a;
+        Address[] addresses = new Address[end - offset];
+        for (int i = offset; i < end; i++)
+            addresses[i - offset] = StorageCodec.decodeAddress(getStorage(StorageKeys.operatorIndex(i)));
 
         return addresses;
     }
 
+    /**
+     * Get total no of operators
+     * @return no of operators
+     */
+    @Callable
+    public static int getOperatorCount() {
+        return operatorCount;
+    }
+
     /**
      * Transfer specified initialTopupAmount to the address. This method can only be called by a operator account. Ideally, this method
      * is called to credit newly generated account. The account registered through this operation can only request for topup
-     * later. This method is called from the centralized server.
+     * later. This method is called from the centralized server. Operator's balance is not checked here, see {@link #rebalanceOperators(int, int)}.
      * @param toAddress
      */
     @Callable
@@ -118,30 +195,255 @@ public class AionFaucetContract {
         onlyOperator();
         require(BigInteger.ZERO.compareTo(initialTopupAmount) == -1);
 
-        //Check operator's balance. Topup if required
-        if (Blockchain.getBalance(getCaller()).compareTo(operatorThresholdBalance) == -1) {
-            //transfer
-            Blockchain.call(getCaller(), operatorTransferBalance, new byte[0], getRemainingEnergy());
+        DisbursementWindow disbursementWindow = loadDisbursementWindow();
+        require(isWithinDisbursementBudget(disbursementWindow, initialTopupAmount));
+
+        if (registerRecipient(toAddress, initialTopupAmount)) {
+            totalRecipients++;
+            disbursementWindow.spent = disbursementWindow.spent.add(initialTopupAmount);
+            storeDisbursementWindow(disbursementWindow);
         }
+    }
+
+    /**
+     * Register multiple addresses in one transaction. Same as {@link #registerAddress(Address)} for each address.
+     * Addresses which are null or already registered are skipped, and so are
+     * the remaining addresses once the disbursement budget of the current window is used up.
+     * This method can only be called by a operator account.
+     * @param toAddresses addresses to register
+     * @return registration status for each address, in the same order as toAddresses
+     */
+    @Callable
+    public static boolean[] registerAddresses(Address[] toAddresses) {
+        onlyOperator();
+        require(toAddresses != null);
+        require(BigInteger.ZERO.compareTo(initialTopupAmount) == -1);
+
+        DisbursementWindow disbursementWindow = loadDisbursementWindow();
+
+        boolean[] registered = new boolean[toAddresses.length];
+        int count = 0;
+        for (int i = 0; i < toAddresses.length; i++) {
+            Address toAddress = toAddresses[i];
+            if (toAddress == null || getRecipientDetailsFromStorage(toAddress) != null)
+                continue;
+
+            if (!isWithinDisbursementBudget(disbursementWindow, initialTopupAmount))
+                break;
+
+            if (registerRecipient(toAddress, initialTopupAmount)) {
+                registered[i] = true;
+                count++;
+                disbursementWindow.spent = disbursementWindow.spent.add(initialTopupAmount);
+            }
+        }
+
+        totalRecipients += count;
+        if (count > 0)
+            storeDisbursementWindow(disbursementWindow);
+
+        return registered;
+    }
+
+    /**
+     * Set the Merkle root of addresses which can register themselves with {@link #claim(byte[][], BigInteger)}.
+     * Leaves are blake2b(address | amount as 32 bytes), and each parent is blake2b of its two children in ascending
+     * byte order. Setting a new root replaces the previous cohort. Addresses which are already registered can't claim.
+     * This method can be called by the owner or a operator account.
+     * @param root 32 bytes root, or null to disable claims
+     */
+    @Callable
+    public static void setClaimRoot(byte[] root) {
+        onlyOwnerOrOperator();
+        require(root == null || root.length == 32);
+        claimRoot = root;
+
+        FaucetEvent.claimRootUpdated(root);
+    }
+
+    @Callable
+    public static byte[] getClaimRoot() {
+        return claimRoot;
+    }
+
+    /**
+     * Register the caller with the amount assigned to it in the current claim root. The caller is registered the same
+     * way as by {@link #registerAddress(Address)}, but receives the claimed amount instead of initialTopupAmount.
+     * @param proof sibling hashes from the caller's leaf up to the root
+     * @param amount amount in nAmp, as in the caller's leaf
+     */
+    @Callable
+    public static void claim(byte[][] proof, BigInteger amount) {
+        require(claimRoot != null);
+        require(proof != null && proof.length <= MAX_CLAIM_PROOF_LENGTH);
+        require(amount != null && amount.signum() > 0);
+
+        Address caller = getCaller();
+        require(getRecipientDetailsFromStorage(caller) == null);
+
+        byte[] hash = blake2b(AionBuffer.allocate(Address.LENGTH + 32)
+                .putAddress(caller)
+                .put32ByteInt(amount)
+                .getArray());
+        for (byte[] sibling : proof) {
+            require(sibling != null && sibling.length == 32);
+            hash = hashClaimPair(hash, sibling);
+        }
+        require(bytesEqual(hash, claimRoot));
+
+        DisbursementWindow disbursementWindow = loadDisbursementWindow();
+        require(isWithinDisbursementBudget(disbursementWindow, amount));
+
+        require(registerRecipient(caller, amount));
+        totalRecipients++;
+        disbursementWindow.spent = disbursementWindow.spent.add(amount);
+        storeDisbursementWindow(disbursementWindow);
 
-        Result result = call(toAddress, initialTopupAmount, new byte[0], getRemainingEnergy());
+        checkContractMinimumBalance();
+    }
+
+    /**
+     * Register the caller with a voucher signed off-chain by a operator's Ed25519 key. The voucher can be used once, before
+     * its expiry block. Signed message, see {@link #getVoucherMessage(Address, BigInteger, long, long)}:
+     * contract address | recipient | amount (32 bytes) | expiryBlockNo (long) | nonce (long)
+     * @param amount amount in nAmp
+     * @param expiryBlockNo last block in which the voucher can be used
+     * @param nonce operator's voucher nonce. Each nonce can be used once per operator
+     * @param publicKey operator's Ed25519 public key. The operator's address is derived from it
+     * @param signature Ed25519 signature of the message
+     */
+    @Callable
+    public static void registerWithVoucher(BigInteger amount, long expiryBlockNo, long nonce, byte[] publicKey, byte[] signature) {
+        require(amount != null && amount.signum() > 0);
+        require(getBlockNumber() <= expiryBlockNo);
+        require(nonce >= 0);
+        require(publicKey != null && publicKey.length == ED25519_PUBLIC_KEY_LENGTH);
+        require(signature != null && signature.length == ED25519_SIGNATURE_LENGTH);
+
+        Address operator = getAddressFromPublicKey(publicKey);
+        require(getStorage(StorageKeys.operator(operator)) != null);
+
+        Address caller = getCaller();
+        require(getRecipientDetailsFromStorage(caller) == null);
+        require(edVerify(getVoucherMessage(caller, amount, expiryBlockNo, nonce), signature, publicKey));
+
+        //Mark the nonce as used. StorageCodec.NONCES_PER_BITMAP nonces share one storage entry
+        byte[] nonceKey = StorageKeys.voucherNonces(operator, nonce);
+        byte[] nonces = getStorage(nonceKey);
+        require(!StorageCodec.isNonceUsed(nonces, nonce));
+        putStorage(nonceKey, StorageCodec.markNonceUsed(nonces, nonce));
+
+        DisbursementWindow disbursementWindow = loadDisbursementWindow();
+        require(isWithinDisbursementBudget(disbursementWindow, amount));
+
+        require(registerRecipient(caller, amount));
+        totalRecipients++;
+        disbursementWindow.spent = disbursementWindow.spent.add(amount);
+        storeDisbursementWindow(disbursementWindow);
+
+        checkContractMinimumBalance();
+    }
+
+    /**
+     * Check if a operator's voucher nonce is already used
+     * @param operator
+     * @param nonce
+     * @return true if the nonce is used
+     */
+    @Callable
+    public static boolean isVoucherNonceUsed(Address operator, long nonce) {
+        require(operator != null && nonce >= 0);
+        return StorageCodec.isNonceUsed(getStorage(StorageKeys.voucherNonces(operator, nonce)), nonce);
+    }
+
+    /**
+     * Get the message to sign for a voucher. The message includes this contract's address, so a voucher can't be used
+     * with another deployment.
+     * @param recipient
+     * @param amount amount in nAmp
+     * @param expiryBlockNo
+     * @param nonce
+     * @return message
+     */
+    @Callable
+    public static byte[] getVoucherMessage(Address recipient, BigInteger amount, long expiryBlockNo, long nonce) {
+        return AionBuffer.allocate(2 * Address.LENGTH + 32 + 2 * Long.BYTES)
+                .putAddress(getAddress())
+                .putAddress(recipient)
+                .put32ByteInt(amount)
+                .putLong(expiryBlockNo)
+                .putLong(nonce)
+                .getArray();
+    }
+
+    /**
+     * Transfer amount to the address and store the recipient's details.
+     * @param toAddress
+     * @param amount initial amount
+     * @return true if the transfer was successful
+     */
+    private static boolean registerRecipient(Address toAddress, BigInteger amount) {
+        Result result = call(toAddress, amount, new byte[0], getRemainingEnergy());
 
         if (result.isSuccess()) {
-            println("Transfer was successful. " + getBalance(toAddress) + " - " + getBalanceOfThisContract());
+            if (diagnostics)
+                printTransferDiagnostics("register", "success", toAddress, amount);
 
             //Registered the account
             AccountDetails accountDetails = new AccountDetails();
             accountDetails.lastRequestBlockNo = getBlockNumber();
-            accountDetails.total = initialTopupAmount;
+            accountDetails.total = amount;
+            accountDetails.tokenBucket = StorageCodec.packTokenBucket(rateLimitCapacity, getBlockNumber());
 
             addRecipientDetailsToStorage(toAddress, accountDetails);
+            totalDisbursed = totalDisbursed.add(amount);
 
-            totalRecipients++;
-
-            FaucetEvent.addressRegistered(toAddress);
+            FaucetEvent.addressRegistered(toAddress, amount);
+            return true;
         } else {
-            println("Transfer failed to address : " + toAddress);
+            if (diagnostics)
+                printTransferDiagnostics("register", "failed", toAddress, amount);
+            return false;
+        }
+    }
+
+    /**
+     * Transfer a default operator balance to the operators of a page which don't have minimum threshold balance to operate.
+     * Registrations don't refill the operator's account, so this should be called periodically by the owner, page by page
+     * upto {@link #getOperatorCount()}. Pages are the same as {@link #getOperatorsPage(int, int)}.
+     * Only owner can call this method.
+     * @param offset index of the first operator
+     * @param limit maximum no of operators to check. Capped at MAX_OPERATOR_PAGE_SIZE
+     * @return no of operators refilled
+     */
+    @Callable
+    public static int rebalanceOperators(int offset, int limit) {
+        onlyOwner();
+        require(offset >= 0 && limit >= 0);
+
+        int end = offset + Math.min(limit, MAX_OPERATOR_PAGE_SIZE);
+        if (end > operatorCount)
+            end = operatorCount;
+
+        int refilled = 0;
+        for (int i = offset; i < end; i++) {
+            if (refillOperatorIfRequired(StorageCodec.decodeAddress(getStorage(StorageKeys.operatorIndex(i)))))
+                refilled++;
+        }
+        return refilled;
+    }
+
+    /**
+     * If operator account doesn't has minimum threshold balance to operate, transfer a default operator balance to it.
+     * @param operator
+     * @return true if the operator was refilled
+     */
+    private static boolean refillOperatorIfRequired(Address operator) {
+        if (Blockchain.getBalance(operator).compareTo(operatorThresholdBalance) == -1) {
+            //transfer
+            return Blockchain.call(operator, operatorTransferBalance, new byte[0], getRemainingEnergy()).isSuccess();
         }
+        return false;
     }
 
     @Callable
@@ -164,7 +466,7 @@ public class AionFaucetContract {
     }
 
     /**
-     * Get recipient's retry count in a day
+     * Get no of topups used by the recipient, which haven't been refilled yet
      * @param address
      * @return
      */
@@ -173,7 +475,7 @@ public class AionFaucetContract {
         AccountDetails accountDetails = getRecipientDetailsFromStorage(address);
 
         if(accountDetails != null) {
-            return accountDetails.retryCount;
+            return rateLimitCapacity - StorageCodec.getTokens(refillTokenBucket(accountDetails.tokenBucket));
         } else {
             return -1;
         }
@@ -211,42 +513,163 @@ public class AionFaucetContract {
         }
     }
 
+    /**
+     * Get details of multiple recipients in one call. The result contains one fixed size entry of
+     * RECIPIENT_DETAILS_LENGTH bytes per address, in the same order as addresses.
+     * Entry layout: flags (1 byte) | retryCount (int) | lastRequestBlockNo (long) | total (32 bytes)
+     * retryCount is the same as {@link #getRecipientRetryCount(Address)}.
+     * Flags: bit 0 is set if the address is registered, bit 1 is set if the address can request for a topup.
+     * For unregistered addresses, retryCount and lastRequestBlockNo are -1 and total is 0, same as the single address getters.
+     * @param addresses
+     * @return packed recipient details
+     */
+    @Callable
+    public static byte[] getRecipientDetailsBatch(Address[] addresses) {
+        require(addresses != null);
+
+        AionBuffer buffer = AionBuffer.allocate(addresses.length * RECIPIENT_DETAILS_LENGTH);
+        for (Address address : addresses) {
+            AccountDetails accountDetails = address != null ? getRecipientDetailsFromStorage(address) : null;
+
+            if (accountDetails != null) {
+                int tokens = StorageCodec.getTokens(refillTokenBucket(accountDetails.tokenBucket));
+                byte flags = RECIPIENT_REGISTERED_FLAG;
+                if (tokens > 0)
+                    flags |= RECIPIENT_CAN_REQUEST_FLAG;
+
+                buffer.put(flags)
+                        .putInt(rateLimitCapacity - tokens)
+                        .putLong(accountDetails.lastRequestBlockNo)
+                        .put32ByteInt(accountDetails.total);
+            } else {
+                buffer.put(address != null ? RECIPIENT_CAN_REQUEST_FLAG : 0)
+                        .putInt(-1)
+                        .putLong(-1)
+                        .put32ByteInt(BigInteger.ZERO);
+            }
+        }
+
+        return buffer.getArray();
+    }
+
     /**
      * Called by an address to request for a topup
      */
     @Callable
     public static void topUp() {
-        require(canRequest(getCaller()));
-        require(isRegistered());
+        Address caller = getCaller();
 
-        Result result = call(getCaller(), topupAmount, new byte[0], getRemainingEnergy());
+        //Load recipient's details once for validation and update
+        AccountDetails accountDetails = getRecipientDetailsFromStorage(caller);
+        require(accountDetails != null); //Only registered addresses can request topup
 
-        if (result.isSuccess()) {
+        long tokenBucket = refillTokenBucket(accountDetails.tokenBucket);
+        require(StorageCodec.getTokens(tokenBucket) > 0);
+
+        DisbursementWindow disbursementWindow = loadDisbursementWindow();
+        require(isWithinDisbursementBudget(disbursementWindow, topupAmount));
+
+        if (transferTopup(caller, accountDetails, tokenBucket)) {
+            disbursementWindow.spent = disbursementWindow.spent.add(topupAmount);
+            storeDisbursementWindow(disbursementWindow);
+        }
+
+        checkContractMinimumBalance();
+    }
+
+    /**
+     * Topup multiple registered addresses on their behalf in one transaction. This method can only be called by a operator
+     * account, for example by a relay server which batches topup requests. The same rules as {@link #topUp()} apply to
+     * each address. Addresses which are not registered or can't request a topup now are skipped, and so are the remaining
+     * addresses once the disbursement budget of the current window is used up.
+     * @param recipients addresses to topup
+     * @return topup status for each address, in the same order as recipients
+     */
+    @Callable
+    public static boolean[] topUpAddresses(Address[] recipients) {
+        onlyOperator();
+        require(recipients != null);
+
+        DisbursementWindow disbursementWindow = loadDisbursementWindow();
+
+        boolean[] toppedUp = new boolean[recipients.length];
+        int count = 0;
+        for (int i = 0; i < recipients.length; i++) {
+            Address recipient = recipients[i];
+            AccountDetails accountDetails = recipient != null ? getRecipientDetailsFromStorage(recipient) : null;
+            if (accountDetails == null)
+                continue;
+
+            long tokenBucket = refillTokenBucket(accountDetails.tokenBucket);
+            if (StorageCodec.getTokens(tokenBucket) == 0)
+                continue;
+
+            if (!isWithinDisbursementBudget(disbursementWindow, topupAmount))
+                break;
 
-            AccountDetails accountDetails = getRecipientDetailsFromStorage(getCaller());
+            if (transferTopup(recipient, accountDetails, tokenBucket)) {
+                toppedUp[i] = true;
+                count++;
+                disbursementWindow.spent = disbursementWindow.spent.add(topupAmount);
+            }
+        }
+
+        if (count > 0)
+            storeDisbursementWindow(disbursementWindow);
+
+        checkContractMinimumBalance();
+
+        return toppedUp;
+    }
+
+    /**
+     * Transfer topupAmount to a recipient and store the updated details.
+     * @param recipient
+     * @param accountDetails recipient's current details
+     * @param tokenBucket recipient's refilled token bucket with at least one token
+     * @return true if the transfer was successful
+     */
+    private static boolean transferTopup(Address recipient, AccountDetails accountDetails, long tokenBucket) {
+        Result result = call(recipient, topupAmount, new byte[0], getRemainingEnergy());
+
+        if (result.isSuccess()) {
+            accountDetails.tokenBucket = StorageCodec.packTokenBucket(StorageCodec.getTokens(tokenBucket) - 1,
+                    StorageCodec.getLastRefillBlockNo(tokenBucket));
             accountDetails.lastRequestBlockNo = getBlockNumber();
             accountDetails.total = accountDetails.total.add(topupAmount);
 
-            if(accountDetails.retryCount >= MAX_NO_OF_TRIES) //reset the counter
-                accountDetails.retryCount = 1;
-            else
-                accountDetails.retryCount++;
-
-            addRecipientDetailsToStorage(getCaller(), accountDetails);
+            addRecipientDetailsToStorage(recipient, accountDetails);
+            totalDisbursed = totalDisbursed.add(topupAmount);
+            totalTopups++;
+            lastTopupBlockNo = accountDetails.lastRequestBlockNo;
 
-            FaucetEvent.topup(getCaller(), topupAmount);
+            FaucetEvent.topup(recipient, topupAmount);
 
-            println("Topup was successful. " + getBalance(getCaller()) + " - " + getBalanceOfThisContract());
+            if (diagnostics)
+                printTransferDiagnostics("topup", "success", recipient, topupAmount);
+            return true;
         } else {
-            println("Topup failed to address : " + getCaller());
+            if (diagnostics)
+                printTransferDiagnostics("topup", "failed", recipient, topupAmount);
+            return false;
         }
+    }
 
+    /**
+     * Publish an event if contract's balance is below contractMinimumBalance
+     */
+    private static void checkContractMinimumBalance() {
         BigInteger contractBalance = Blockchain.getBalanceOfThisContract();
         if(contractBalance != null && contractBalance.compareTo(contractMinimumBalance) == -1) {
             FaucetEvent.balanceBelowMinimum(contractBalance);
         }
     }
 
+    /**
+     * Check if an address can request for a topup. This method doesn't modify the contract's state.
+     * @param address
+     * @return true if a topup can be requested
+     */
     @Callable
     public static boolean canRequest(Address address) {
         AccountDetails accountDetails = getRecipientDetailsFromStorage(address);
@@ -254,42 +677,78 @@ public class AionFaucetContract {
         if (accountDetails == null)
             return true;
 
-        if (Blockchain.getBlockNumber() - accountDetails.lastRequestBlockNo >= minBlockNoDelay) {
-            accountDetails.retryCount = 0; //reset retryCount
+        return StorageCodec.getTokens(refillTokenBucket(accountDetails.tokenBucket)) > 0;
+    }
 
-            //Update account details with new retrycount
-            addRecipientDetailsToStorage(address, accountDetails);
-            return true;
-        } else {
-            if(accountDetails.retryCount < MAX_NO_OF_TRIES) //Can try MAX_NO_OF_TRIES with the time limit
-                return true;
-            else {
-//                FaucetEvent.maximumDailyRetryLimitReached(address, String.valueOf(accountDetails.retryCount));
-                return false;
-            }
-        }
+    /**
+     * Refill a token bucket upto the current block. Tokens are added one per rateLimitRefillBlocks blocks, upto
+     * rateLimitCapacity. The refilled bucket is only persisted when the recipient requests the next topup.
+     * @param tokenBucket stored token bucket
+     * @return token bucket at the current block
+     */
+    private static long refillTokenBucket(long tokenBucket) {
+        int tokens = StorageCodec.getTokens(tokenBucket);
+        long lastRefillBlockNo = StorageCodec.getLastRefillBlockNo(tokenBucket);
+        long blockNo = getBlockNumber();
+
+        if (tokens >= rateLimitCapacity)
+            return StorageCodec.packTokenBucket(rateLimitCapacity, blockNo);
+
+        long refills = (blockNo - lastRefillBlockNo) / rateLimitRefillBlocks;
+        if (refills <= 0)
+            return tokenBucket;
+        else if (refills >= rateLimitCapacity - tokens)
+            return StorageCodec.packTokenBucket(rateLimitCapacity, blockNo);
+        else
+            return StorageCodec.packTokenBucket(tokens + (int) refills, lastRefillBlockNo + refills * rateLimitRefillBlocks);
+    }
+
+    /**
+     * Set the per recipient rate limit. A recipient can request upto capacity topups at once, and one topup is
+     * refilled every refillBlocks blocks.
+     * @param capacity maximum no of topups, upto MAX_RATE_LIMIT_CAPACITY
+     * @param refillBlocks no of blocks to refill one topup
+     */
+    @Callable
+    public static void setRateLimit(int capacity, long refillBlocks) {
+        onlyOwner();
+        require(capacity > 0 && capacity <= MAX_RATE_LIMIT_CAPACITY);
+        require(refillBlocks > 0);
+        rateLimitCapacity = capacity;
+        rateLimitRefillBlocks = refillBlocks;
     }
 
-    private static boolean isRegistered() {
-        boolean isRegistered = getRecipientDetailsFromStorage(getCaller()) != null;
+    @Callable
+    public static int getRateLimitCapacity() {
+        return rateLimitCapacity;
+    }
 
-        if(isRegistered) {
-            return true;
-        } else {
-//            FaucetEvent.addressNotRegistered();
-            return false;
-        }
+    @Callable
+    public static long getRateLimitRefillBlocks() {
+        return rateLimitRefillBlocks;
     }
 
+    /**
+     * Set the no of blocks to refill all topups. Kept for compatibility, see {@link #setRateLimit(int, long)}.
+     * The delay is not stored. It sets the refill period to blockDelay / rateLimitCapacity blocks, rounded down and
+     * at least one block, so a delay below the capacity, including 0, refills one topup per block.
+     * @param blockDelay
+     */
     @Callable
     public static void setMinBlockDelay(long blockDelay) {
         onlyOwner();
-        minBlockNoDelay = blockDelay;
+        require(blockDelay >= 0);
+        rateLimitRefillBlocks = Math.max(1, blockDelay / rateLimitCapacity);
     }
 
+    /**
+     * Effective no of blocks to refill all topups, i.e. rateLimitRefillBlocks * rateLimitCapacity. This is the value
+     * passed to {@link #setMinBlockDelay(long)} rounded down to a multiple of the capacity, and at least the capacity.
+     * @return
+     */
     @Callable
     public static long getMinBlockDelay() {
-        return minBlockNoDelay;
+        return rateLimitRefillBlocks * rateLimitCapacity;
     }
 
     @Callable
@@ -355,6 +814,119 @@ public class AionFaucetContract {
         contractMinimumBalance = ONE_AION.multiply(amount);
     }
 
+    /**
+     * Limit the amount paid out to recipients, by registrations and topups, per window of blocks. Windows are aligned to
+     * block numbers, so the current window is blockNumber / windowBlocks.
+     * @param amount budget per window in Aion. 0 removes the limit
+     * @param windowBlocks no of blocks per window
+     */
+    @Callable
+    public static void setDisbursementBudget(BigInteger amount, long windowBlocks) {
+        onlyOwner();
+        require(amount != null && amount.signum() >= 0);
+        require(windowBlocks > 0);
+        disbursementBudget = ONE_AION.multiply(amount);
+        disbursementWindowBlocks = windowBlocks;
+    }
+
+    /**
+     * Get the disbursement budget per window
+     * @return budget in nAmp, 0 if unlimited
+     */
+    @Callable
+    public static BigInteger getDisbursementBudget() {
+        return disbursementBudget;
+    }
+
+    @Callable
+    public static long getDisbursementWindowBlocks() {
+        return disbursementWindowBlocks;
+    }
+
+    /**
+     * Get the current disbursement window. The window ends at block (window + 1) * windowBlocks.
+     * @return current window
+     */
+    @Callable
+    public static long getDisbursementWindow() {
+        return getBlockNumber() / disbursementWindowBlocks;
+    }
+
+    /**
+     * Get the amount which can still be paid out in the current window.
+     * @return remaining budget in nAmp, 0 if the budget was lowered below the amount already paid out.
+     * If the budget is unlimited, the contract's balance
+     */
+    @Callable
+    public static BigInteger getRemainingDisbursement() {
+        if (disbursementBudget.signum() == 0)
+            return getBalanceOfThisContract();
+
+        return disbursementBudget.subtract(loadDisbursementWindow().spent).max(BigInteger.ZERO);
+    }
+
+    /**
+     * Get the faucet's running totals and configuration in one call, for monitoring.
+     * The result has FAUCET_STATS_LENGTH bytes. Layout:
+     * blockNumber (long) | totalRecipients (long) | totalTopups (long) | lastTopupBlockNo (long) | totalDisbursed (32 bytes)
+     * | contractBalance (32 bytes) | topupAmount (32 bytes) | initialTopupAmount (32 bytes) | contractMinimumBalance (32 bytes)
+     * | rateLimitCapacity (int) | rateLimitRefillBlocks (long) | minBlockDelay (long) | operatorCount (int)
+     * | disbursementBudget (32 bytes) | disbursementWindowBlocks (long) | remainingDisbursement (32 bytes)
+     * Amounts are in nAmp. lastTopupBlockNo is 0 if there was no topup yet.
+     * @return packed stats
+     */
+    @Callable
+    public static byte[] getFaucetStats() {
+        return AionBuffer.allocate(FAUCET_STATS_LENGTH)
+                .putLong(getBlockNumber())
+                .putLong(totalRecipients)
+                .putLong(totalTopups)
+                .putLong(lastTopupBlockNo)
+                .put32ByteInt(totalDisbursed)
+                .put32ByteInt(getBalanceOfThisContract())
+                .put32ByteInt(topupAmount)
+                .put32ByteInt(initialTopupAmount)
+                .put32ByteInt(contractMinimumBalance)
+                .putInt(rateLimitCapacity)
+                .putLong(rateLimitRefillBlocks)
+                .putLong(getMinBlockDelay())
+                .putInt(operatorCount)
+                .put32ByteInt(disbursementBudget)
+                .putLong(disbursementWindowBlocks)
+                .put32ByteInt(getRemainingDisbursement())
+                .getArray();
+    }
+
+    /**
+     * Publish events in the legacy v1 format instead of v2. See {@link FaucetEvent}.
+     * @param legacy true to publish v1 events
+     */
+    @Callable
+    public static void setLegacyEventFormat(boolean legacy) {
+        onlyOwner();
+        FaucetEvent.setLegacyFormat(legacy);
+    }
+
+    @Callable
+    public static boolean isLegacyEventFormat() {
+        return FaucetEvent.isLegacyFormat();
+    }
+
+    /**
+     * Enable or disable diagnostic output of transfers
+     * @param enabled
+     */
+    @Callable
+    public static void setDiagnostics(boolean enabled) {
+        onlyOwner();
+        diagnostics = enabled;
+    }
+
+    @Callable
+    public static boolean isDiagnostics() {
+        return diagnostics;
+    }
+
     /**
      * Refund the remaining fund to owner's account and stop the contract.
      */
@@ -365,50 +937,110 @@ public class AionFaucetContract {
     }
 
     private static void addRecipientDetailsToStorage(Address address, AccountDetails accountDetails) {
-        putStorage(getRecipientKeyBytes(address), getRecipientAccountDetailsBytes(accountDetails));
+        putStorage(StorageKeys.recipient(address), StorageCodec.encodeAccountDetails(accountDetails));
     }
 
     private static AccountDetails getRecipientDetailsFromStorage(Address address) {
-        byte[] bytes = getStorage(getRecipientKeyBytes(address));
+        byte[] bytes = getStorage(StorageKeys.recipient(address));
 
         if(bytes == null || bytes.length == 0) {
             return null;
         }
 
-        AionBuffer buffer = AionBuffer.wrap(bytes);
+        return StorageCodec.decodeAccountDetails(bytes);
+    }
+
+    /**
+     * Aion account address of an Ed25519 public key: 0xa0 followed by the last 31 bytes of blake2b(publicKey)
+     */
+    private static Address getAddressFromPublicKey(byte[] publicKey) {
+        byte[] address = blake2b(publicKey);
+        address[0] = (byte) 0xa0;
+        return new Address(address);
+    }
+
+    /**
+     * Load the amount spent in the current window. Storage is not read if the budget is unlimited.
+     * @return current window
+     */
+    private static DisbursementWindow loadDisbursementWindow() {
+        DisbursementWindow disbursementWindow = new DisbursementWindow();
+        disbursementWindow.window = getBlockNumber() / disbursementWindowBlocks;
+        disbursementWindow.spent = BigInteger.ZERO;
 
-        int retryCount = buffer.getInt();
-        BigInteger total = buffer.get32ByteInt();
-        long lastRequestBlockNo = buffer.getLong();
+        if (disbursementBudget.signum() == 0)
+            return disbursementWindow;
 
-        AccountDetails accountDetails = new AccountDetails();
-        accountDetails.retryCount = retryCount;
-        accountDetails.total = total;
-        accountDetails.lastRequestBlockNo = lastRequestBlockNo;
+        byte[] bytes = getStorage(StorageKeys.disbursementWindow());
+        if (bytes != null && StorageCodec.decodeDisbursementWindow(bytes) == disbursementWindow.window)
+            disbursementWindow.spent = StorageCodec.decodeDisbursementSpent(bytes);
 
-        return accountDetails;
+        return disbursementWindow;
     }
 
-    private static byte[] getRecipientKeyBytes(Address address) {
-        return AionBuffer.allocate(Address.LENGTH)
-                .putAddress(address)
-                .getArray();
+    private static boolean isWithinDisbursementBudget(DisbursementWindow disbursementWindow, BigInteger amount) {
+        return disbursementBudget.signum() == 0 || disbursementWindow.spent.add(amount).compareTo(disbursementBudget) <= 0;
     }
 
-    private static byte[] getRecipientAccountDetailsBytes(AccountDetails accountDetails) {
-        AionBuffer aionBuffer = AionBuffer.allocate(Integer.BYTES + 32 + Long.BYTES);
+    private static void storeDisbursementWindow(DisbursementWindow disbursementWindow) {
+        if (disbursementBudget.signum() == 0)
+            return;
 
-        return aionBuffer.putInt(accountDetails.retryCount)
-                .put32ByteInt(accountDetails.total)
-                .putLong(accountDetails.lastRequestBlockNo)
-                .getArray();
+        putStorage(StorageKeys.disbursementWindow(),
+                StorageCodec.encodeDisbursementWindow(disbursementWindow.window, disbursementWindow.spent));
+    }
+
+    /**
+     * Parent of two claim tree nodes. The nodes are hashed in ascending byte order, so proofs don't need left/right flags.
+     */
+    private static byte[] hashClaimPair(byte[] a, byte[] b) {
+        boolean ascending = true;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                ascending = (a[i] & 0xFF) < (b[i] & 0xFF);
+                break;
+            }
+        }
+
+        byte[] pair = new byte[a.length + b.length];
+        System.arraycopy(ascending ? a : b, 0, pair, 0, a.length);
+        System.arraycopy(ascending ? b : a, 0, pair, a.length, b.length);
+        return blake2b(pair);
+    }
+
+    private static boolean bytesEqual(byte[] a, byte[] b) {
+        if (a.length != b.length)
+            return false;
+
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Print a transfer in key=value format. Should only be called when diagnostics is enabled.
+     */
+    private static void printTransferDiagnostics(String operation, String status, Address recipient, BigInteger amount) {
+        println("faucet operation=" + operation + " status=" + status + " recipient=" + recipient
+                + " amount=" + amount + " recipientBalance=" + getBalance(recipient)
+                + " contractBalance=" + getBalanceOfThisContract() + " block=" + getBlockNumber());
     }
 
     /**
      * Check onlyOperator
      */
     private static void onlyOperator() {
-        require(operators.contains(getCaller()));
+        require(getStorage(StorageKeys.operator(getCaller())) != null);
+    }
+
+    /**
+     * Check owner or operator
+     */
+    private static void onlyOwnerOrOperator() {
+        Address caller = getCaller();
+        require(owner.equals(caller) || getStorage(StorageKeys.operator(caller)) != null);
     }
 
     /**
@@ -2,29 +2,97 @@ package com.bloxbean.contracts;
 
 import avm.Address;
 import avm.Blockchain;
+import org.aion.avm.userlib.AionBuffer;
 
 import java.math.BigInteger;
 
+/**
+ * Events published by the faucet contract.
+ *
+ * Schema v2 (default): the event name is the first topic and the address, if any, is the second topic so that logs can be
+ * filtered by address. Data starts with the schema version, followed by fixed size binary fields.
+ * Operator events data: version (1 byte) | block number (long)
+ * Amount events data: version (1 byte) | amount (32 bytes) | block number (long)
+ *
+ * Schema v1 (legacy): the event name is the only topic. Address and amount are in the data, amount as a decimal string.
+ */
 public class FaucetEvent {
 
+    public static final byte SCHEMA_VERSION = 2;
+
+    public static final int OPERATOR_EVENT_DATA_LENGTH = 1 + Long.BYTES;
+    public static final int AMOUNT_EVENT_DATA_LENGTH = 1 + 32 + Long.BYTES;
+
+    //Publish events in v1 format for consumers which are not migrated yet
+    private static boolean legacyFormat;
+
+    public static boolean isLegacyFormat() {
+        return legacyFormat;
+    }
+
+    public static void setLegacyFormat(boolean legacy) {
+        legacyFormat = legacy;
+    }
+
     public static void operatorAdded(Address operator) {
-        Blockchain.log("OperatorAdded".getBytes(), operator.toByteArray());
+        if (legacyFormat)
+            Blockchain.log("OperatorAdded".getBytes(), operator.toByteArray());
+        else
+            Blockchain.log("OperatorAdded".getBytes(), operator.toByteArray(), operatorEventData());
     }
 
     public static void operatorRemoved(Address operator) {
-        Blockchain.log("OperatorRemoved".getBytes(), operator.toByteArray());
+        if (legacyFormat)
+            Blockchain.log("OperatorRemoved".getBytes(), operator.toByteArray());
+        else
+            Blockchain.log("OperatorRemoved".getBytes(), operator.toByteArray(), operatorEventData());
     }
 
-    public static void addressRegistered(Address address) {
-        Blockchain.log("AddressRegistered".getBytes(), address.toByteArray());
+    public static void addressRegistered(Address address, BigInteger amount) {
+        if (legacyFormat)
+            Blockchain.log("AddressRegistered".getBytes(), address.toByteArray());
+        else
+            Blockchain.log("AddressRegistered".getBytes(), address.toByteArray(), amountEventData(amount));
     }
 
-    public static void topup(Address address, BigInteger balance) {
-        Blockchain.log("TopUp".getBytes(), address.toByteArray(), String.valueOf(balance).getBytes());
+    public static void topup(Address address, BigInteger amount) {
+        if (legacyFormat)
+            Blockchain.log("TopUp".getBytes(), address.toByteArray(), String.valueOf(amount).getBytes());
+        else
+            Blockchain.log("TopUp".getBytes(), address.toByteArray(), amountEventData(amount));
+    }
+
+    /**
+     * Published when the claim root is set. The root is the second topic, all zero if claims are disabled.
+     */
+    public static void claimRootUpdated(byte[] root) {
+        byte[] topic = root != null ? root : new byte[32];
+        if (legacyFormat)
+            Blockchain.log("ClaimRootUpdated".getBytes(), topic);
+        else
+            Blockchain.log("ClaimRootUpdated".getBytes(), topic, operatorEventData());
     }
 
     public static void balanceBelowMinimum(BigInteger balance) {
-        Blockchain.log("MinimumBalance".getBytes(), String.valueOf(balance).getBytes());
+        if (legacyFormat)
+            Blockchain.log("MinimumBalance".getBytes(), String.valueOf(balance).getBytes());
+        else
+            Blockchain.log("MinimumBalance".getBytes(), amountEventData(balance));
+    }
+
+    private static byte[] operatorEventData() {
+        return AionBuffer.allocate(OPERATOR_EVENT_DATA_LENGTH)
+                .put(SCHEMA_VERSION)
+                .putLong(Blockchain.getBlockNumber())
+                .getArray();
+    }
+
+    private static byte[] amountEventData(BigInteger amount) {
+        return AionBuffer.allocate(AMOUNT_EVENT_DATA_LENGTH)
+                .put(SCHEMA_VERSION)
+                .put32ByteInt(amount)
+                .putLong(Blockchain.getBlockNumber())
+                .getArray();
     }
 
 }
@@ -0,0 +1,236 @@
+package com.bloxbean.contracts;
+
+import avm.Address;
+
+import java.math.BigInteger;
+
+import static avm.Blockchain.require;
+
+/**
+ * Encoding of the faucet contract's storage values. Keys are built by {@link StorageKeys}.
+ *
+ * Every record starts with a version byte, so that a layout can change while older records can still be read.
+ * Records are written straight into an array of the exact size and read in place, without intermediate buffers.
+ * Encoded arrays are never reused, as storage may keep a reference to them.
+ */
+public class StorageCodec {
+
+    public static final byte RECORD_VERSION = 1;
+    public static final int NONCES_PER_BITMAP = 256;
+
+    //Token bucket word: tokens in the upper 16 bits, last refill block no in the lower 48 bits
+    private static final int TOKEN_BUCKET_BLOCK_BITS = 48;
+    private static final long TOKEN_BUCKET_BLOCK_MASK = (1L << TOKEN_BUCKET_BLOCK_BITS) - 1;
+
+    public static long packTokenBucket(int tokens, long lastRefillBlockNo) {
+        return ((long) tokens << TOKEN_BUCKET_BLOCK_BITS) | (lastRefillBlockNo & TOKEN_BUCKET_BLOCK_MASK);
+    }
+
+    public static int getTokens(long tokenBucket) {
+        return (int) (tokenBucket >>> TOKEN_BUCKET_BLOCK_BITS);
+    }
+
+    public static long getLastRefillBlockNo(long tokenBucket) {
+        return tokenBucket & TOKEN_BUCKET_BLOCK_MASK;
+    }
+
+    /**
+     * Compact account details record.
+     * Layout: version (1 byte) | tokenBucket (long) | lastRequestBlockNo (unsigned varint) | total length (1 byte) | total
+     * @param accountDetails
+     * @return encoded record
+     */
+    public static byte[] encodeAccountDetails(AionFaucetContract.AccountDetails accountDetails) {
+        byte[] total = accountDetails.total.toByteArray();
+
+        long blockNo = accountDetails.lastRequestBlockNo;
+        int blockNoLength = 1;
+        while ((blockNo >>>= 7) != 0)
+            blockNoLength++;
+
+        byte[] bytes = new byte[1 + Long.BYTES + blockNoLength + 1 + total.length];
+        bytes[0] = RECORD_VERSION;
+        putLong(bytes, 1, accountDetails.tokenBucket, Long.BYTES);
+
+        int pos = 1 + Long.BYTES;
+        blockNo = accountDetails.lastRequestBlockNo;
+        while ((blockNo & ~0x7FL) != 0) {
+            bytes[pos++] = (byte) ((blockNo & 0x7F) | 0x80);
+            blockNo >>>= 7;
+        }
+        bytes[pos++] = (byte) blockNo;
+
+        bytes[pos++] = (byte) total.length;
+        System.arraycopy(total, 0, bytes, pos, total.length);
+
+        return bytes;
+    }
+
+    /**
+     * Decode an account details record.
+     * The fixed size records of the first release, retryCount (int) | total (32 bytes) | lastRequestBlockNo (long),
+     * are not read. They were stored under the raw address, not under {@link StorageKeys#recipient(Address)}, and a
+     * deployed contract's code can't be replaced, so this version only ever runs on a new deployment without them.
+     * @param bytes encoded record
+     * @return account details
+     */
+    public static AionFaucetContract.AccountDetails decodeAccountDetails(byte[] bytes) {
+        require(bytes.length > 1 + Long.BYTES && bytes[0] == RECORD_VERSION);
+
+        AionFaucetContract.AccountDetails accountDetails = decodeBlockNoAndTotal(bytes, 1 + Long.BYTES);
+        accountDetails.tokenBucket = getLong(bytes, 1, Long.BYTES);
+        return accountDetails;
+    }
+
+    private static AionFaucetContract.AccountDetails decodeBlockNoAndTotal(byte[] bytes, int pos) {
+        AionFaucetContract.AccountDetails accountDetails = new AionFaucetContract.AccountDetails();
+
+        long blockNo = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[pos++];
+            blockNo |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        accountDetails.lastRequestBlockNo = blockNo;
+
+        int length = bytes[pos++] & 0xFF;
+        require(bytes.length == pos + length);
+        byte[] total = new byte[length];
+        System.arraycopy(bytes, pos, total, 0, length);
+        accountDetails.total = new BigInteger(total);
+
+        return accountDetails;
+    }
+
+    /**
+     * Layout: version (1 byte) | value (int)
+     */
+    public static byte[] encodeInt(int value) {
+        byte[] bytes = new byte[1 + Integer.BYTES];
+        bytes[0] = RECORD_VERSION;
+        putLong(bytes, 1, value, Integer.BYTES);
+        return bytes;
+    }
+
+    public static int decodeInt(byte[] bytes) {
+        checkVersion(bytes, 1 + Integer.BYTES);
+        return (int) getLong(bytes, 1, Integer.BYTES);
+    }
+
+    /**
+     * Layout: version (1 byte) | address (32 bytes)
+     */
+    public static byte[] encodeAddress(Address address) {
+        byte[] bytes = new byte[1 + Address.LENGTH];
+        bytes[0] = RECORD_VERSION;
+        System.arraycopy(address.toByteArray(), 0, bytes, 1, Address.LENGTH);
+        return bytes;
+    }
+
+    public static Address decodeAddress(byte[] bytes) {
+        checkVersion(bytes, 1 + Address.LENGTH);
+        byte[] address = new byte[Address.LENGTH];
+        System.arraycopy(bytes, 1, address, 0, Address.LENGTH);
+        return new Address(address);
+    }
+
+    /**
+     * Layout: version (1 byte) | window (long) | spent (32 bytes)
+     */
+    public static byte[] encodeDisbursementWindow(long window, BigInteger spent) {
+        byte[] bytes = new byte[1 + Long.BYTES + 32];
+        bytes[0] = RECORD_VERSION;
+        putLong(bytes, 1, window, Long.BYTES);
+        put32ByteInt(bytes, 1 + Long.BYTES, spent);
+        return bytes;
+    }
+
+    public static long decodeDisbursementWindow(byte[] bytes) {
+        checkVersion(bytes, 1 + Long.BYTES + 32);
+        return getLong(bytes, 1, Long.BYTES);
+    }
+
+    public static BigInteger decodeDisbursementSpent(byte[] bytes) {
+        checkVersion(bytes, 1 + Long.BYTES + 32);
+        return get32ByteInt(bytes, 1 + Long.BYTES);
+    }
+
+    /**
+     * Check a nonce in a nonce bitmap
+     * @param bitmap encoded bitmap, null if no nonce of the bitmap is used
+     * @param nonce
+     * @return true if the nonce is used
+     */
+    public static boolean isNonceUsed(byte[] bitmap, long nonce) {
+        if (bitmap == null)
+            return false;
+
+        checkVersion(bitmap, 1 + NONCES_PER_BITMAP / 8);
+        int bit = (int) (nonce % NONCES_PER_BITMAP);
+        return (bitmap[1 + bit / 8] & (1 << (bit % 8))) != 0;
+    }
+
+    /**
+     * Layout: version (1 byte) | one bit per nonce (32 bytes)
+     * @param bitmap encoded bitmap, null if no nonce of the bitmap is used
+     * @param nonce
+     * @return new bitmap with the nonce's bit set
+     */
+    public static byte[] markNonceUsed(byte[] bitmap, long nonce) {
+        byte[] bytes = new byte[1 + NONCES_PER_BITMAP / 8];
+        if (bitmap != null) {
+            checkVersion(bitmap, bytes.length);
+            System.arraycopy(bitmap, 0, bytes, 0, bytes.length);
+        }
+        bytes[0] = RECORD_VERSION;
+
+        int bit = (int) (nonce % NONCES_PER_BITMAP);
+        bytes[1 + bit / 8] |= (byte) (1 << (bit % 8));
+        return bytes;
+    }
+
+    /**
+     * Write the lower length bytes of value in big endian order
+     */
+    static void putLong(byte[] bytes, int pos, long value, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            bytes[pos + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * Read a big endian value of length bytes. Values shorter than a long are sign extended.
+     */
+    static long getLong(byte[] bytes, int pos, int length) {
+        long value = bytes[pos];
+        for (int i = 1; i < length; i++)
+            value = (value << 8) | (bytes[pos + i] & 0xFF);
+        return value;
+    }
+
+    private static void put32ByteInt(byte[] bytes, int pos, BigInteger value) {
+        byte[] magnitude = value.toByteArray();
+        int length = magnitude.length;
+        int offset = 0;
+        if (length > 32) {
+            //Leading sign byte of a positive value
+            require(length == 33 && magnitude[0] == 0);
+            offset = 1;
+            length = 32;
+        }
+        System.arraycopy(magnitude, offset, bytes, pos + 32 - length, length);
+    }
+
+    private static BigInteger get32ByteInt(byte[] bytes, int pos) {
+        byte[] magnitude = new byte[33]; //Leading zero keeps the value positive
+        System.arraycopy(bytes, pos, magnitude, 1, 32);
+        return new BigInteger(magnitude);
+    }
+
+    private static void checkVersion(byte[] bytes, int length) {
+        require(bytes.length == length && bytes[0] == RECORD_VERSION);
+    }
+}
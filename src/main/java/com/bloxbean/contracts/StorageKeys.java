@@ -0,0 +1,72 @@
+package com.bloxbean.contracts;
+
+import avm.Address;
+
+import static avm.Blockchain.blake2b;
+
+/**
+ * Storage keys of the faucet contract. Each persisted type has its own prefix and its key is blake2b(prefix | id),
+ * so keys of different types never collide. Values are encoded by {@link StorageCodec}.
+ *
+ * Hash inputs are local arrays. Static buffers would be part of the contract's object graph, which is loaded and
+ * stored on every call.
+ */
+public class StorageKeys {
+
+    public static final byte RECIPIENT = 1;
+    public static final byte OPERATOR = 2;
+    public static final byte OPERATOR_INDEX = 3;
+    public static final byte DISBURSEMENT_WINDOW = 4;
+    public static final byte VOUCHER_NONCES = 5;
+
+    /**
+     * Recipient's account details. See {@link StorageCodec#encodeAccountDetails(AionFaucetContract.AccountDetails)}
+     */
+    public static byte[] recipient(Address address) {
+        return addressKey(RECIPIENT, address);
+    }
+
+    /**
+     * Operator's index in the operator list. See {@link StorageCodec#encodeInt(int)}
+     */
+    public static byte[] operator(Address address) {
+        return addressKey(OPERATOR, address);
+    }
+
+    /**
+     * Operator at an index of the operator list. See {@link StorageCodec#encodeAddress(Address)}
+     */
+    public static byte[] operatorIndex(int index) {
+        byte[] intInput = new byte[1 + Integer.BYTES];
+        intInput[0] = OPERATOR_INDEX;
+        StorageCodec.putLong(intInput, 1, index, Integer.BYTES);
+        return blake2b(intInput);
+    }
+
+    /**
+     * Amount paid out in the current disbursement window. A single entry, overwritten when a new window starts.
+     * See {@link StorageCodec#encodeDisbursementWindow(long, java.math.BigInteger)}
+     */
+    public static byte[] disbursementWindow() {
+        return blake2b(new byte[]{DISBURSEMENT_WINDOW});
+    }
+
+    /**
+     * Bitmap of an operator's used voucher nonces, StorageCodec.NONCES_PER_BITMAP nonces per entry.
+     * See {@link StorageCodec#markNonceUsed(byte[], long)}
+     */
+    public static byte[] voucherNonces(Address operator, long nonce) {
+        byte[] addressLongInput = new byte[1 + Address.LENGTH + Long.BYTES];
+        addressLongInput[0] = VOUCHER_NONCES;
+        System.arraycopy(operator.toByteArray(), 0, addressLongInput, 1, Address.LENGTH);
+        StorageCodec.putLong(addressLongInput, 1 + Address.LENGTH, nonce / StorageCodec.NONCES_PER_BITMAP, Long.BYTES);
+        return blake2b(addressLongInput);
+    }
+
+    private static byte[] addressKey(byte type, Address address) {
+        byte[] addressInput = new byte[1 + Address.LENGTH];
+        addressInput[0] = type;
+        System.arraycopy(address.toByteArray(), 0, addressInput, 1, Address.LENGTH);
+        return blake2b(addressInput);
+    }
+}
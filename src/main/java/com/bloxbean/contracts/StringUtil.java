@@ -1,42 +1,95 @@
 package com.bloxbean.contracts;
 
-import org.aion.avm.userlib.AionList;
-
-import java.util.List;
-
+/**
+ * Tokenizer for delimiter separated strings. A string is scanned once, without copying its remainder after each
+ * delimiter. An empty token after a trailing delimiter is dropped, e.g. "a:b:" has the tokens "a" and "b".
+ */
 public class StringUtil {
 
+    /**
+     * Receives the offsets of each token, so that a token can be parsed without creating a substring
+     */
+    public interface TokenVisitor {
+        /**
+         * @param str tokenized string
+         * @param index token index
+         * @param start offset of the token's first char
+         * @param end offset after the token's last char
+         */
+        void visit(String str, int index, int start, int end);
+    }
+
     public static String[] splits(String str, char delimeter) {
-        List<String> tokens = new AionList<>();
-        int i = str.indexOf(delimeter);
+        String[] tokens = new String[countTokens(str, delimeter)];
 
-        if(i == -1)
-            return new String[]{str};
+        int start = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            int end = tokenEnd(str, delimeter, start);
+            tokens[i] = str.substring(start, end);
+            start = end + 1;
+        }
+        return tokens;
+    }
 
-        while (i != -1) {
-            String token = str.substring(0, i);
-            tokens.add(token);
+    /**
+     * @param str
+     * @param delimeter
+     * @return no of tokens {@link #splits(String, char)} returns
+     */
+    public static int countTokens(String str, char delimeter) {
+        int count = 1;
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            if (str.charAt(i) == delimeter)
+                count++;
+        }
 
-            if(str.length() > i + 1) {
-                str = str.substring(i + 1);
+        if (length > 0 && str.charAt(length - 1) == delimeter)
+            count--;
+        return count;
+    }
 
-                i = str.indexOf(delimeter);
+    /**
+     * Token offsets without substrings. Token i spans from offsets[2 * i] (inclusive) to offsets[2 * i + 1] (exclusive).
+     * @param str
+     * @param delimeter
+     * @return start and end offset of each token
+     */
+    public static int[] tokenOffsets(String str, char delimeter) {
+        int[] offsets = new int[2 * countTokens(str, delimeter)];
 
-                if(i == -1) {
-                    tokens.add(str);
-                }
-            } else {
-                i = -1;
-            }
+        int start = 0;
+        for (int i = 0; i < offsets.length; i += 2) {
+            int end = tokenEnd(str, delimeter, start);
+            offsets[i] = start;
+            offsets[i + 1] = end;
+            start = end + 1;
         }
+        return offsets;
+    }
 
-        int length = tokens.size();
-        String[] retList = new String[length];
+    /**
+     * Pass the offsets of each token to the visitor, in order. Nothing is allocated.
+     * @param str
+     * @param delimeter
+     * @param visitor
+     * @return no of tokens
+     */
+    public static int forEachToken(String str, char delimeter, TokenVisitor visitor) {
+        int length = str.length();
+        int index = 0;
+        int start = 0;
+        do {
+            int end = tokenEnd(str, delimeter, start);
+            visitor.visit(str, index++, start, end);
+            start = end + 1;
+        } while (start < length);
 
-        i = 0;
-        for(String token: tokens) {
-            retList[i++] = token;
-        }
-        return retList;
+        return index;
+    }
+
+    private static int tokenEnd(String str, char delimeter, int start) {
+        int end = str.indexOf(delimeter, start);
+        return end == -1 ? str.length() : end;
     }
 }
@@ -1,6 +1,14 @@
 package com.bloxbean.contracts;
 
 import avm.Address;
+import com.bloxbean.contracts.benchmark.StorageAccess;
+import com.bloxbean.contracts.benchmark.StorageTracer;
+import com.bloxbean.contracts.benchmark.TransactionTrace;
+import net.i2p.crypto.eddsa.EdDSAEngine;
+import net.i2p.crypto.eddsa.EdDSAPrivateKey;
+import net.i2p.crypto.eddsa.spec.EdDSANamedCurveTable;
+import net.i2p.crypto.eddsa.spec.EdDSAPrivateKeySpec;
+import org.aion.avm.core.crypto.CryptoUtil;
 import org.aion.avm.core.util.Helpers;
 import org.aion.avm.embed.AvmRule;
 import org.aion.avm.tooling.ABIUtil;
@@ -14,7 +22,13 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.fail;
@@ -55,7 +69,7 @@ public class AionFaucetContractTest {
 
         //Deploy dapp as owner argument
         byte[] deploymentArgs = ABIUtil.encodeDeploymentArguments(owner);
-        byte[] dapp = avmRule.getDappBytes(AionFaucetContract.class, deploymentArgs, 1, FaucetEvent.class, AionMap.class, AionSet.class);
+        byte[] dapp = avmRule.getDappBytes(AionFaucetContract.class, deploymentArgs, 1, FaucetEvent.class, StorageKeys.class, StorageCodec.class, AionMap.class, AionSet.class);
         dappAddr = avmRule.deploy(from, BigInteger.ZERO, dapp).getDappAddress();
 
         //add sufficient aion to the default account
@@ -120,6 +134,71 @@ public class AionFaucetContractTest {
         Assert.assertEquals(operator2, operators[0]);
     }
 
+    @Test
+    public void whenRemoveFirstOfThreeOperatorsThenRemainingOperatorsListed() {
+        Address operator3 = new Address(Helpers.hexStringToBytes("0xa0dddd7224a9eacde5c308161298afed14003d99ddb59bb784fc22a2d1d02f77"));
+        addOperator(operator1);
+        addOperator(operator2);
+        addOperator(operator3);
+
+        removeOperator(operator1);
+        Address[] operators = getOperators();
+
+        Assert.assertEquals(2, operators.length);
+        Assert.assertEquals(operator3, operators[0]);
+        Assert.assertEquals(operator2, operators[1]);
+
+        //Re-add the removed operator
+        addOperator(operator1);
+        operators = getOperators();
+
+        Assert.assertEquals(3, operators.length);
+        Assert.assertEquals(operator1, operators[2]);
+    }
+
+    @Test
+    public void whenRemovedOperatorRegisterThenFail() {
+        addOperator(operator1);
+        removeOperator(operator1);
+
+        byte[] txData = ABIUtil.encodeMethodArguments("registerAddress", dev1);
+        AvmRule.ResultWrapper result = avmRule.call(operator1, dappAddr, BigInteger.ZERO, txData);
+
+        Assert.assertTrue(result.getReceiptStatus().isFailed());
+    }
+
+    @Test
+    public void whenAddExistingOperatorThenFail() {
+        addOperator(operator1);
+
+        byte[] txData = ABIUtil.encodeMethodArguments("addOperator", operator1);
+        AvmRule.ResultWrapper result = avmRule.call(owner, dappAddr, BigInteger.ZERO, txData);
+
+        Assert.assertTrue(result.getReceiptStatus().isFailed());
+    }
+
+    @Test
+    public void whenGetOperatorsPageThenReturnSlice() {
+        Address operator3 = new Address(Helpers.hexStringToBytes("0xa0dddd7224a9eacde5c308161298afed14003d99ddb59bb784fc22a2d1d02f77"));
+        addOperator(operator1);
+        addOperator(operator2);
+        addOperator(operator3);
+
+        Assert.assertEquals(3, getOperatorCount());
+
+        Address[] page = getOperatorsPage(0, 2);
+        Assert.assertEquals(2, page.length);
+        Assert.assertEquals(operator1, page[0]);
+        Assert.assertEquals(operator2, page[1]);
+
+        page = getOperatorsPage(2, 2);
+        Assert.assertEquals(1, page.length);
+        Assert.assertEquals(operator3, page[0]);
+
+        page = getOperatorsPage(3, 2);
+        Assert.assertEquals(0, page.length);
+    }
+
     @Test
     public void whenAddOperatorThenOperatorAssignedWithSomeBalance() {
         BigInteger balance1 = getBalance(operator1);
@@ -142,19 +221,45 @@ public class AionFaucetContractTest {
 
 
     @Test
-    public void whenInitialTransferCallAndMinbalanceThenAutoCreditOperatorAccount() {
+    public void whenOperatorBelowMinbalanceThenRebalanceCreditsOperatorAccount() {
 
         addOperator(operator1);
+        addOperator(operator2);
 
-        avmRule.balanceTransfer(operator1, operator2, new BigInteger("9000000000000000000"), energyLimit, energyPrice); //Transfer to bring down the balance of operator2 to below threshold
+        avmRule.balanceTransfer(operator1, operator2, new BigInteger("9000000000000000000"), energyLimit, energyPrice); //Transfer to bring down the balance of operator1 to below threshold
 
         Assert.assertTrue(new BigInteger("1000000000000000000").compareTo(avmRule.kernel.getBalance(new AionAddress(operator1.toByteArray()))) == 1);
 
+        //Registration doesn't refill the operator
         register(operator1, dev1);
+        Assert.assertTrue(new BigInteger("1000000000000000000").compareTo(avmRule.kernel.getBalance(new AionAddress(operator1.toByteArray()))) == 1);
+
+        //Page without operator1
+        byte[] txData = ABIUtil.encodeMethodArguments("rebalanceOperators", 1, 1);
+        AvmRule.ResultWrapper result = avmRule.call(owner, dappAddr, BigInteger.ZERO, txData);
+        Assert.assertTrue(result.getReceiptStatus().isSuccess());
+        Assert.assertEquals(0, result.getDecodedReturnData());
+        Assert.assertTrue(new BigInteger("1000000000000000000").compareTo(avmRule.kernel.getBalance(new AionAddress(operator1.toByteArray()))) == 1);
+
+        txData = ABIUtil.encodeMethodArguments("rebalanceOperators", 0, 2);
+        result = avmRule.call(owner, dappAddr, BigInteger.ZERO, txData);
+        Assert.assertTrue(result.getReceiptStatus().isSuccess());
+        Assert.assertEquals(1, result.getDecodedReturnData());
 
         Assert.assertTrue(new BigInteger("1000000000000000000").compareTo(avmRule.kernel.getBalance(new AionAddress(operator1.toByteArray()))) == -1);
     }
 
+    @Test
+    public void whenNonOwnerOrInvalidPageRebalanceOperatorsThenFail() {
+        addOperator(operator1);
+
+        byte[] txData = ABIUtil.encodeMethodArguments("rebalanceOperators", 0, 1);
+        Assert.assertTrue(avmRule.call(operator1, dappAddr, BigInteger.ZERO, txData).getReceiptStatus().isFailed());
+
+        txData = ABIUtil.encodeMethodArguments("rebalanceOperators", -1, 1);
+        Assert.assertTrue(avmRule.call(owner, dappAddr, BigInteger.ZERO, txData).getReceiptStatus().isFailed());
+    }
+
     @Test
     public void whenRegisterThenCheckRecipients() {
         addOperator(operator1);
@@ -187,6 +292,196 @@ public class AionFaucetContractTest {
 
     }
 
+    @Test
+    public void whenRegisterAddressesThenAllRecipientsRegistered() {
+        addOperator(operator1);
+
+        boolean[] registered = registerAddresses(operator1, new Address[]{dev1, dev2});
+        long blockNo = avmRule.kernel.getBlockNumber();
+
+        Assert.assertTrue(registered[0]);
+        Assert.assertTrue(registered[1]);
+        Assert.assertEquals(2, getTotalRecipients());
+        Assert.assertEquals(true, isRecipientAddressRegistered(dev1));
+        Assert.assertEquals(true, isRecipientAddressRegistered(dev2));
+        Assert.assertEquals(blockNo, getRecipientLastRequestBlockNo(dev2));
+        Assert.assertEquals(DEFAULT_INITIAL_TOPUP_AMOUNT, getBalance(dev1));
+        Assert.assertEquals(DEFAULT_INITIAL_TOPUP_AMOUNT, getBalance(dev2));
+    }
+
+    @Test
+    public void whenRegisterAddressesWithRegisteredAddressThenSkipped() {
+        addOperator(operator1);
+        register(operator1, dev1);
+
+        boolean[] registered = registerAddresses(operator1, new Address[]{dev1, dev2});
+
+        Assert.assertFalse(registered[0]);
+        Assert.assertTrue(registered[1]);
+        Assert.assertEquals(2, getTotalRecipients());
+        Assert.assertEquals(DEFAULT_INITIAL_TOPUP_AMOUNT, getBalance(dev1));
+    }
+
+    @Test
+    public void whenNonOperatorRegisterAddressesThenFail() {
+        byte[] txData = ABIUtil.encodeMethodArguments("registerAddresses", (Object) new Address[]{dev1, dev2});
+        AvmRule.ResultWrapper result = avmRule.call(from, dappAddr, BigInteger.ZERO, txData);
+
+        Assert.assertTrue(result.getReceiptStatus().isFailed());
+        Assert.assertEquals(0, getTotalRecipients());
+    }
+
+    @Test
+    public void whenRegisterThenRecipientDetailsStoredInCompactFormat() {
+        addOperator(operator1);
+        register(operator1, dev1);
+
+        byte[] record = avmRule.kernel.getStorage(new AionAddress(dappAddr.toByteArray()), recipientKey(dev1));
+
+        Assert.assertEquals(StorageCodec.RECORD_VERSION, record[0]);
+        Assert.assertTrue(record.length < Integer.BYTES + 32 + Long.BYTES);
+        Assert.assertEquals(DEFAULT_INITIAL_TOPUP_AMOUNT, getRecipientTotal(dev1));
+    }
+
+    @Test
+    public void givenRateLimitWhenTopupThenOneTopupRefilledPerPeriod() {
+        setRateLimit(owner, 3, 2);
+        addOperator(operator1);
+        register(operator1, dev1);
+
+        topup(dev1);
+        topup(dev1);
+        topup(dev1);
+        Assert.assertFalse(canRequest(dev1));
+        Assert.assertEquals(3, getRecipientRetryCount(dev1));
+
+        avmRule.kernel.generateBlock();
+        Assert.assertFalse(canRequest(dev1));
+
+        avmRule.kernel.generateBlock();
+        Assert.assertTrue(canRequest(dev1));
+        Assert.assertEquals(2, getRecipientRetryCount(dev1));
+
+        topup(dev1);
+        Assert.assertFalse(canRequest(dev1));
+    }
+
+    @Test
+    public void whenNonOwnerSetRateLimitThenFail() {
+        Assert.assertTrue(setRateLimit(dev1, 10, 1).getReceiptStatus().isFailed());
+        Assert.assertTrue(setRateLimit(owner, 0, 1).getReceiptStatus().isFailed());
+        Assert.assertTrue(setRateLimit(owner, 3, 0).getReceiptStatus().isFailed());
+    }
+
+    @Test
+    public void whenSetMinBlockDelayThenRefillPeriodUpdated() {
+        setMinBlockDelay(300);
+
+        byte[] txData = ABIUtil.encodeMethodArguments("getRateLimitRefillBlocks");
+        AvmRule.ResultWrapper result = avmRule.call(from, dappAddr, BigInteger.ZERO, txData);
+        Assert.assertEquals(100L, result.getDecodedReturnData());
+
+        txData = ABIUtil.encodeMethodArguments("getMinBlockDelay");
+        result = avmRule.call(from, dappAddr, BigInteger.ZERO, txData);
+        Assert.assertEquals(300L, result.getDecodedReturnData());
+    }
+
+    @Test
+    public void whenSetMinBlockDelayNotMultipleOfCapacityThenEffectiveDelayReturned() {
+        setMinBlockDelay(100);
+
+        byte[] txData = ABIUtil.encodeMethodArguments("getMinBlockDelay");
+        AvmRule.ResultWrapper result = avmRule.call(from, dappAddr, BigInteger.ZERO, txData);
+        Assert.assertEquals(99L, result.getDecodedReturnData());
+
+        setMinBlockDelay(0);
+
+        result = avmRule.call(from, dappAddr, BigInteger.ZERO, txData);
+        Assert.assertEquals(3L, result.getDecodedReturnData());
+
+        txData = ABIUtil.encodeMethodArguments("setMinBlockDelay", -1L);
+        result = avmRule.call(owner, dappAddr, BigInteger.ZERO, txData);
+        Assert.assertTrue(result.getReceiptStatus().isFailed());
+    }
+
+    @Test
+    public void whenGetRecipientDetailsBatchThenPackedDetailsReturned() {
+        setMinBlockDelay(3);
+        addOperator(operator1);
+        register(operator1, dev1);
+        topup(dev1);
+        long blockNo = avmRule.kernel.getBlockNumber();
+
+        byte[] txData = ABIUtil.encodeMethodArguments("getRecipientDetailsBatch", (Object) new Address[]{dev1, dev2});
+        AvmRule.ResultWrapper result = avmRule.call(from, dappAddr, BigInteger.ZERO, txData);
+        Assert.assertTrue(result.getReceiptStatus().isSuccess());
+
+        byte[] details = (byte[]) result.getDecodedReturnData();
+        Assert.assertEquals(2 * AionFaucetContract.RECIPIENT_DETAILS_LENGTH, details.length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(details);
+        byte[] total = new byte[32];
+
+        //dev1: registered and can request
+        Assert.assertEquals(AionFaucetContract.RECIPIENT_REGISTERED_FLAG | AionFaucetContract.RECIPIENT_CAN_REQUEST_FLAG, buffer.get());
+        Assert.assertEquals(1, buffer.getInt());
+        Assert.assertEquals(blockNo, buffer.getLong());
+        buffer.get(total);
+        Assert.assertEquals(DEFAULT_INITIAL_TOPUP_AMOUNT.add(ONE_AION), new BigInteger(1, total));
+
+        //dev2: not registered
+        Assert.assertEquals(AionFaucetContract.RECIPIENT_CAN_REQUEST_FLAG, buffer.get());
+        Assert.assertEquals(-1, buffer.getInt());
+        Assert.assertEquals(-1L, buffer.getLong());
+        buffer.get(total);
+        Assert.assertEquals(BigInteger.ZERO, new BigInteger(1, total));
+    }
+
+    @Test
+    public void whenGetFaucetStatsThenTotalsAndConfigReturned() {
+        setMinBlockDelay(3);
+        addOperator(operator1);
+        register(operator1, dev1);
+        register(operator1, dev2);
+        topup(dev1);
+        long topupBlockNo = avmRule.kernel.getBlockNumber();
+
+        byte[] txData = ABIUtil.encodeMethodArguments("getFaucetStats");
+        AvmRule.ResultWrapper result = avmRule.call(from, dappAddr, BigInteger.ZERO, txData);
+        Assert.assertTrue(result.getReceiptStatus().isSuccess());
+
+        byte[] stats = (byte[]) result.getDecodedReturnData();
+        Assert.assertEquals(AionFaucetContract.FAUCET_STATS_LENGTH, stats.length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(stats);
+        byte[] amount = new byte[32];
+
+        Assert.assertEquals(avmRule.kernel.getBlockNumber(), buffer.getLong());
+        Assert.assertEquals(2L, buffer.getLong()); //totalRecipients
+        Assert.assertEquals(1L, buffer.getLong()); //totalTopups
+        Assert.assertEquals(topupBlockNo, buffer.getLong());
+        buffer.get(amount);
+        Assert.assertEquals(DEFAULT_INITIAL_TOPUP_AMOUNT.multiply(BigInteger.valueOf(2)).add(ONE_AION), new BigInteger(1, amount));
+        buffer.get(amount);
+        Assert.assertEquals(avmRule.kernel.getBalance(new AionAddress(dappAddr.toByteArray())), new BigInteger(1, amount));
+        buffer.get(amount);
+        Assert.assertEquals(ONE_AION, new BigInteger(1, amount)); //topupAmount
+        buffer.get(amount);
+        Assert.assertEquals(DEFAULT_INITIAL_TOPUP_AMOUNT, new BigInteger(1, amount));
+        buffer.get(amount);
+        Assert.assertEquals(ONE_AION.multiply(BigInteger.TEN), new BigInteger(1, amount)); //contractMinimumBalance
+        Assert.assertEquals(AionFaucetContract.MAX_NO_OF_TRIES, buffer.getInt());
+        Assert.assertEquals(1L, buffer.getLong()); //rateLimitRefillBlocks
+        Assert.assertEquals(3L, buffer.getLong()); //minBlockDelay
+        Assert.assertEquals(1, buffer.getInt()); //operatorCount
+        buffer.get(amount);
+        Assert.assertEquals(BigInteger.ZERO, new BigInteger(1, amount)); //disbursementBudget
+        Assert.assertEquals(1L, buffer.getLong()); //disbursementWindowBlocks
+        buffer.get(amount);
+        Assert.assertEquals(avmRule.kernel.getBalance(new AionAddress(dappAddr.toByteArray())), new BigInteger(1, amount));
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
     @Test
     public void whenTopupWithMaxTryLimitThenOk() {
         setMinBlockDelay(3);
@@ -238,6 +533,232 @@ public class AionFaucetContractTest {
 
     }
 
+    @Test
+    public void whenCanRequestAfterDelayThenStorageNotModified() {
+        setMinBlockDelay(3);
+        addOperator(operator1);
+        register(operator1, dev1);
+
+        topup(dev1);
+        topup(dev1);
+        topup(dev1);
+        Assert.assertFalse(canRequest(dev1));
+        Assert.assertEquals(3, getRecipientRetryCount(dev1));
+
+        for(int i=0; i< 4; i++)
+            avmRule.kernel.generateBlock();
+
+        AionAddress contract = new AionAddress(dappAddr.toByteArray());
+        byte[] recordBefore = avmRule.kernel.getStorage(contract, recipientKey(dev1));
+
+        Assert.assertTrue(canRequest(dev1));
+        Assert.assertEquals(0, getRecipientRetryCount(dev1));
+        Assert.assertArrayEquals(recordBefore, avmRule.kernel.getStorage(contract, recipientKey(dev1)));
+
+        topup(dev1);
+        Assert.assertEquals(1, getRecipientRetryCount(dev1));
+    }
+
+    @Test
+    public void whenOperatorTopUpAddressesThenEligibleAddressesToppedUp() {
+        setMinBlockDelay(3);
+        addOperator(operator1);
+        register(operator1, dev1);
+
+        byte[] txData = ABIUtil.encodeMethodArguments("topUpAddresses", (Object) new Address[]{dev1, dev2});
+        AvmRule.ResultWrapper result = avmRule.call(operator1, dappAddr, BigInteger.ZERO, txData);
+        Assert.assertTrue(result.getReceiptStatus().isSuccess());
+
+        boolean[] toppedUp = (boolean[]) result.getDecodedReturnData();
+        Assert.assertTrue(toppedUp[0]);
+        Assert.assertFalse(toppedUp[1]); //not registered
+
+        Assert.assertEquals(DEFAULT_INITIAL_TOPUP_AMOUNT.add(ONE_AION), getBalance(dev1));
+        Assert.assertEquals(1, getRecipientRetryCount(dev1));
+    }
+
+    @Test
+    public void whenNonOperatorTopUpAddressesThenFail() {
+        addOperator(operator1);
+        register(operator1, dev1);
+
+        byte[] txData = ABIUtil.encodeMethodArguments("topUpAddresses", (Object) new Address[]{dev1});
+        AvmRule.ResultWrapper result = avmRule.call(dev1, dappAddr, BigInteger.ZERO, txData);
+
+        Assert.assertTrue(result.getReceiptStatus().isFailed());
+    }
+
+    @Test
+    public void givenDisbursementBudgetWhenUsedUpThenRegistrationSkippedUntilNextWindow() {
+        Address dev3 = new Address(Helpers.hexStringToBytes("0xa0d6f2b925377d66b087d406eceed90995e17eab443b3e6211cc2b54b9f89a11"));
+        Assert.assertTrue(setDisbursementBudget(owner, BigInteger.ONE, 100).getReceiptStatus().isSuccess());
+        addOperator(operator1);
+
+        boolean[] registered = registerAddresses(operator1, new Address[]{dev1, dev2, dev3});
+
+        Assert.assertTrue(registered[0]);
+        Assert.assertTrue(registered[1]);
+        Assert.assertFalse(registered[2]);
+        Assert.assertEquals(BigInteger.ZERO, getRemainingDisbursement());
+
+        byte[] txData = ABIUtil.encodeMethodArguments("registerAddress", dev3);
+        Assert.assertTrue(avmRule.call(operator1, dappAddr, BigInteger.ZERO, txData).getReceiptStatus().isFailed());
+
+        for (int i = 0; i < 100; i++)
+            avmRule.kernel.generateBlock();
+
+        Assert.assertEquals(ONE_AION, getRemainingDisbursement());
+        register(operator1, dev3);
+        Assert.assertEquals(DEFAULT_INITIAL_TOPUP_AMOUNT, getRemainingDisbursement());
+    }
+
+    @Test
+    public void givenDisbursementBudgetWhenTopupExceedsThenFail() {
+        setDisbursementBudget(owner, BigInteger.ONE, 100);
+        addOperator(operator1);
+        register(operator1, dev1);
+
+        byte[] txData = ABIUtil.encodeMethodArguments("topUp");
+        Assert.assertTrue(avmRule.call(dev1, dappAddr, BigInteger.ZERO, txData).getReceiptStatus().isFailed());
+
+        Assert.assertEquals(DEFAULT_INITIAL_TOPUP_AMOUNT, getRemainingDisbursement());
+        Assert.assertEquals(DEFAULT_INITIAL_TOPUP_AMOUNT, getBalance(dev1));
+    }
+
+    @Test
+    public void givenDisbursementBudgetWhenLoweredBelowSpentThenRemainingIsZero() {
+        Address dev3 = new Address(Helpers.hexStringToBytes("0xa0d6f2b925377d66b087d406eceed90995e17eab443b3e6211cc2b54b9f89a11"));
+        setDisbursementBudget(owner, BigInteger.TWO, 100);
+        addOperator(operator1);
+        registerAddresses(operator1, new Address[]{dev1, dev2, dev3});
+
+        Assert.assertTrue(setDisbursementBudget(owner, BigInteger.ONE, 100).getReceiptStatus().isSuccess());
+
+        Assert.assertEquals(BigInteger.ZERO, getRemainingDisbursement());
+
+        byte[] txData = ABIUtil.encodeMethodArguments("getFaucetStats");
+        byte[] stats = (byte[]) avmRule.call(from, dappAddr, BigInteger.ZERO, txData).getDecodedReturnData();
+        byte[] remaining = new byte[32];
+        System.arraycopy(stats, stats.length - 32, remaining, 0, 32);
+        Assert.assertEquals(BigInteger.ZERO, new BigInteger(1, remaining));
+    }
+
+    @Test
+    public void whenNoDisbursementBudgetThenRemainingIsContractBalance() {
+        addOperator(operator1);
+        register(operator1, dev1);
+
+        Assert.assertEquals(avmRule.kernel.getBalance(new AionAddress(dappAddr.toByteArray())), getRemainingDisbursement());
+        Assert.assertTrue(setDisbursementBudget(dev1, BigInteger.ONE, 100).getReceiptStatus().isFailed());
+        Assert.assertTrue(setDisbursementBudget(owner, BigInteger.ONE, 0).getReceiptStatus().isFailed());
+    }
+
+    @Test
+    public void givenClaimRootWhenClaimWithProofThenRegistered() {
+        addOperator(operator1);
+        byte[][] leaves = claimLeaves();
+        Assert.assertTrue(setClaimRoot(operator1, claimRoot(leaves)).getReceiptStatus().isSuccess());
+
+        allocateBalance(dev2, "100000000000000000");
+        AvmRule.ResultWrapper result = claim(dev2, claimProof(leaves, 1), ONE_AION.multiply(BigInteger.TWO));
+
+        Assert.assertTrue(result.getReceiptStatus().isSuccess());
+        Assert.assertTrue(isRecipientAddressRegistered(dev2));
+        Assert.assertEquals(ONE_AION.multiply(BigInteger.TWO), getRecipientTotal(dev2));
+        Assert.assertEquals(1, getTotalRecipients());
+        Assert.assertEquals(0, getRecipientRetryCount(dev2));
+
+        //Already claimed
+        Assert.assertTrue(claim(dev2, claimProof(leaves, 1), ONE_AION.multiply(BigInteger.TWO)).getReceiptStatus().isFailed());
+    }
+
+    @Test
+    public void givenClaimRootWhenClaimWithWrongAmountThenFail() {
+        byte[][] leaves = claimLeaves();
+        Assert.assertTrue(setClaimRoot(owner, claimRoot(leaves)).getReceiptStatus().isSuccess());
+
+        allocateBalance(dev1, "100000000000000000");
+        Assert.assertTrue(claim(dev1, claimProof(leaves, 0), ONE_AION.multiply(BigInteger.TWO)).getReceiptStatus().isFailed());
+        Assert.assertTrue(claim(dev1, claimProof(leaves, 1), ONE_AION).getReceiptStatus().isFailed());
+        Assert.assertFalse(isRecipientAddressRegistered(dev1));
+
+        Assert.assertTrue(claim(dev1, claimProof(leaves, 0), ONE_AION).getReceiptStatus().isSuccess());
+        Assert.assertTrue(isRecipientAddressRegistered(dev1));
+    }
+
+    @Test
+    public void whenNonOperatorSetClaimRootThenFail() {
+        Assert.assertTrue(setClaimRoot(dev1, new byte[32]).getReceiptStatus().isFailed());
+        Assert.assertTrue(setClaimRoot(owner, new byte[31]).getReceiptStatus().isFailed());
+
+        allocateBalance(dev1, "100000000000000000");
+        Assert.assertTrue(claim(dev1, new byte[0][], ONE_AION).getReceiptStatus().isFailed()); //no claim root
+    }
+
+    @Test
+    public void givenOperatorVoucherWhenRegisterWithVoucherThenRegistered() throws Exception {
+        EdDSAPrivateKey operatorKey = voucherKey((byte) 1);
+        Address operator = voucherOperator(operatorKey);
+        addOperator(operator);
+
+        long expiry = avmRule.kernel.getBlockNumber() + 10;
+        byte[] signature = signVoucher(operatorKey, dev1, ONE_AION, expiry, 7);
+
+        allocateBalance(dev1, "100000000000000000");
+        AvmRule.ResultWrapper result = registerWithVoucher(dev1, ONE_AION, expiry, 7, operatorKey, signature);
+
+        Assert.assertTrue(result.getReceiptStatus().isSuccess());
+        Assert.assertTrue(isRecipientAddressRegistered(dev1));
+        Assert.assertEquals(ONE_AION, getRecipientTotal(dev1));
+        Assert.assertEquals(1, getTotalRecipients());
+
+        byte[] txData = ABIUtil.encodeMethodArguments("isVoucherNonceUsed", operator, 7L);
+        Assert.assertEquals(true, avmRule.call(from, dappAddr, BigInteger.ZERO, txData).getDecodedReturnData());
+        txData = ABIUtil.encodeMethodArguments("isVoucherNonceUsed", operator, 8L);
+        Assert.assertEquals(false, avmRule.call(from, dappAddr, BigInteger.ZERO, txData).getDecodedReturnData());
+    }
+
+    @Test
+    public void whenVoucherNonceReusedThenFail() throws Exception {
+        EdDSAPrivateKey operatorKey = voucherKey((byte) 1);
+        addOperator(voucherOperator(operatorKey));
+        long expiry = avmRule.kernel.getBlockNumber() + 10;
+
+        allocateBalance(dev1, "100000000000000000");
+        allocateBalance(dev2, "100000000000000000");
+        Assert.assertTrue(registerWithVoucher(dev1, ONE_AION, expiry, 300, operatorKey,
+                signVoucher(operatorKey, dev1, ONE_AION, expiry, 300)).getReceiptStatus().isSuccess());
+
+        Assert.assertTrue(registerWithVoucher(dev2, ONE_AION, expiry, 300, operatorKey,
+                signVoucher(operatorKey, dev2, ONE_AION, expiry, 300)).getReceiptStatus().isFailed());
+        Assert.assertTrue(registerWithVoucher(dev2, ONE_AION, expiry, 301, operatorKey,
+                signVoucher(operatorKey, dev2, ONE_AION, expiry, 301)).getReceiptStatus().isSuccess());
+    }
+
+    @Test
+    public void whenVoucherInvalidThenFail() throws Exception {
+        EdDSAPrivateKey operatorKey = voucherKey((byte) 1);
+        EdDSAPrivateKey otherKey = voucherKey((byte) 2);
+        addOperator(voucherOperator(operatorKey));
+        long blockNo = avmRule.kernel.getBlockNumber();
+        allocateBalance(dev1, "100000000000000000");
+
+        //Signed for another recipient
+        Assert.assertTrue(registerWithVoucher(dev1, ONE_AION, blockNo + 10, 1, operatorKey,
+                signVoucher(operatorKey, dev2, ONE_AION, blockNo + 10, 1)).getReceiptStatus().isFailed());
+        //Amount changed
+        Assert.assertTrue(registerWithVoucher(dev1, ONE_AION.multiply(BigInteger.TEN), blockNo + 10, 1, operatorKey,
+                signVoucher(operatorKey, dev1, ONE_AION, blockNo + 10, 1)).getReceiptStatus().isFailed());
+        //Expired
+        Assert.assertTrue(registerWithVoucher(dev1, ONE_AION, blockNo - 1, 1, operatorKey,
+                signVoucher(operatorKey, dev1, ONE_AION, blockNo - 1, 1)).getReceiptStatus().isFailed());
+        //Not a operator
+        Assert.assertTrue(registerWithVoucher(dev1, ONE_AION, blockNo + 10, 1, otherKey,
+                signVoucher(otherKey, dev1, ONE_AION, blockNo + 10, 1)).getReceiptStatus().isFailed());
+
+        Assert.assertFalse(isRecipientAddressRegistered(dev1));
+    }
+
     @Test(expected = AssertionError.class)
     public void whenTopupWithoutRegistrationThenError() {
         setMinBlockDelay(3);
@@ -273,6 +794,91 @@ public class AionFaucetContractTest {
     }
 
 
+    @Test
+    public void whenTopupThenPublishV2EventWithAddressTopic() {
+        addOperator(operator1);
+        register(operator1, dev1);
+
+        setContractMinimumBalance(owner, new BigInteger("60"));
+        AvmRule.ResultWrapper resultWrapper = topup(dev1);
+        long blockNo = avmRule.kernel.getBlockNumber();
+
+        Log log = resultWrapper.getTransactionResult().logs.get(0);
+        List<byte[]> topics = log.copyOfTopics();
+
+        Assert.assertEquals(2, topics.size());
+        Assert.assertArrayEquals(dev1.toByteArray(), topics.get(1));
+
+        ByteBuffer data = ByteBuffer.wrap(log.copyOfData());
+        Assert.assertEquals(FaucetEvent.AMOUNT_EVENT_DATA_LENGTH, data.remaining());
+        Assert.assertEquals(FaucetEvent.SCHEMA_VERSION, data.get());
+        byte[] amount = new byte[32];
+        data.get(amount);
+        Assert.assertEquals(ONE_AION, new BigInteger(1, amount));
+        Assert.assertEquals(blockNo, data.getLong());
+    }
+
+    @Test
+    public void givenLegacyEventFormatWhenTopupThenPublishV1Event() {
+        addOperator(operator1);
+        register(operator1, dev1);
+
+        byte[] txData = ABIUtil.encodeMethodArguments("setLegacyEventFormat", true);
+        Assert.assertTrue(avmRule.call(owner, dappAddr, BigInteger.ZERO, txData).getReceiptStatus().isSuccess());
+
+        setContractMinimumBalance(owner, new BigInteger("60"));
+        AvmRule.ResultWrapper resultWrapper = topup(dev1);
+
+        Log log = resultWrapper.getTransactionResult().logs.get(0);
+
+        Assert.assertEquals(1, log.copyOfTopics().size());
+        Assert.assertEquals(ONE_AION.toString(), new String(log.copyOfData()));
+    }
+
+    @Test
+    public void whenNonOwnerSetLegacyEventFormatThenFail() {
+        byte[] txData = ABIUtil.encodeMethodArguments("setLegacyEventFormat", true);
+        Assert.assertTrue(avmRule.call(from, dappAddr, BigInteger.ZERO, txData).getReceiptStatus().isFailed());
+    }
+
+    @Test
+    public void whenOwnerEnableDiagnosticsThenTopupPrintedWithBalanceLookups() {
+        addOperator(operator1);
+        register(operator1, dev1);
+        StorageTracer tracer = new StorageTracer(avmRule);
+
+        Assert.assertFalse(isDiagnostics());
+        TransactionTrace quiet = tracer.call("topUp", dev1, dappAddr, "topUp");
+        Assert.assertTrue(quiet.isSuccess());
+
+        byte[] txData = ABIUtil.encodeMethodArguments("setDiagnostics", true);
+        Assert.assertTrue(avmRule.call(owner, dappAddr, BigInteger.ZERO, txData).getReceiptStatus().isSuccess());
+        Assert.assertTrue(isDiagnostics());
+
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true));
+        TransactionTrace diagnosed;
+        try {
+            diagnosed = tracer.call("topUp", dev1, dappAddr, "topUp");
+        } finally {
+            System.setOut(out);
+        }
+        Assert.assertTrue(diagnosed.isSuccess());
+
+        //The AVM's own lookups, e.g. of the caller's balance, are in both traces. Only the printed balances differ.
+        Assert.assertTrue(diagnosed.count(StorageAccess.Kind.BALANCE_READ) > quiet.count(StorageAccess.Kind.BALANCE_READ));
+        Assert.assertTrue(printed.toString().contains("faucet operation=topup status=success recipient=" + dev1));
+        Assert.assertTrue(printed.toString().contains("recipientBalance="));
+    }
+
+    @Test
+    public void whenNonOwnerEnableDiagnosticsThenFail() {
+        byte[] txData = ABIUtil.encodeMethodArguments("setDiagnostics", true);
+        Assert.assertTrue(avmRule.call(from, dappAddr, BigInteger.ZERO, txData).getReceiptStatus().isFailed());
+        Assert.assertFalse(isDiagnostics());
+    }
+
     @Test
     public void whenTopupAmountIsSetThenCheckGetTopupAmount() {
 
@@ -371,6 +977,22 @@ public class AionFaucetContractTest {
         return addresses;
     }
 
+    private Address[] getOperatorsPage(int offset, int limit) {
+        byte[] txData = ABIUtil.encodeMethodArguments("getOperatorsPage", offset, limit);
+        AvmRule.ResultWrapper result = avmRule.call(from, dappAddr, BigInteger.ZERO, txData);
+        Assert.assertTrue(result.getReceiptStatus().isSuccess());
+
+        return (Address [])result.getDecodedReturnData();
+    }
+
+    private int getOperatorCount() {
+        byte[] txData = ABIUtil.encodeMethodArguments("getOperatorCount");
+        AvmRule.ResultWrapper result = avmRule.call(from, dappAddr, BigInteger.ZERO, txData);
+        Assert.assertTrue(result.getReceiptStatus().isSuccess());
+
+        return (int)result.getDecodedReturnData();
+    }
+
     private void register(Address operator, Address dev) {
         byte[] txData = ABIUtil.encodeMethodArguments("registerAddress", dev);
         AvmRule.ResultWrapper result = avmRule.call(operator, dappAddr, BigInteger.ZERO, txData);
@@ -380,6 +1002,16 @@ public class AionFaucetContractTest {
         Assert.assertTrue(status.isSuccess());
     }
 
+    private boolean[] registerAddresses(Address operator, Address[] devs) {
+        byte[] txData = ABIUtil.encodeMethodArguments("registerAddresses", (Object) devs);
+        AvmRule.ResultWrapper result = avmRule.call(operator, dappAddr, BigInteger.ZERO, txData);
+
+        TransactionStatus status = result.getReceiptStatus();
+        Assert.assertTrue(status.isSuccess());
+
+        return (boolean[]) result.getDecodedReturnData();
+    }
+
     private AvmRule.ResultWrapper topup(Address dev) {
         byte[] txData = ABIUtil.encodeMethodArguments("topUp");
         AvmRule.ResultWrapper result = avmRule.call(dev, dappAddr, BigInteger.ZERO, txData);
@@ -391,6 +1023,40 @@ public class AionFaucetContractTest {
         return result;
     }
 
+    private boolean canRequest(Address address) {
+        byte[] txData = ABIUtil.encodeMethodArguments("canRequest", address);
+        AvmRule.ResultWrapper result = avmRule.call(from, dappAddr, BigInteger.ZERO, txData);
+        Assert.assertTrue(result.getReceiptStatus().isSuccess());
+
+        return (boolean)result.getDecodedReturnData();
+    }
+
+    private boolean isDiagnostics() {
+        byte[] txData = ABIUtil.encodeMethodArguments("isDiagnostics");
+        AvmRule.ResultWrapper result = avmRule.call(from, dappAddr, BigInteger.ZERO, txData);
+        Assert.assertTrue(result.getReceiptStatus().isSuccess());
+
+        return (boolean)result.getDecodedReturnData();
+    }
+
+    private AvmRule.ResultWrapper setDisbursementBudget(Address caller, BigInteger amount, long windowBlocks) {
+        byte[] txData = ABIUtil.encodeMethodArguments("setDisbursementBudget", amount, windowBlocks);
+        return avmRule.call(caller, dappAddr, BigInteger.ZERO, txData);
+    }
+
+    private BigInteger getRemainingDisbursement() {
+        byte[] txData = ABIUtil.encodeMethodArguments("getRemainingDisbursement");
+        AvmRule.ResultWrapper result = avmRule.call(from, dappAddr, BigInteger.ZERO, txData);
+        Assert.assertTrue(result.getReceiptStatus().isSuccess());
+
+        return (BigInteger) result.getDecodedReturnData();
+    }
+
+    private AvmRule.ResultWrapper setRateLimit(Address caller, int capacity, long refillBlocks) {
+        byte[] txData = ABIUtil.encodeMethodArguments("setRateLimit", capacity, refillBlocks);
+        return avmRule.call(caller, dappAddr, BigInteger.ZERO, txData);
+    }
+
     private void setMinBlockDelay(long blockDelay) {
         byte[] txData = ABIUtil.encodeMethodArguments("setMinBlockDelay", blockDelay);
         AvmRule.ResultWrapper result = avmRule.call(owner, dappAddr, BigInteger.ZERO, txData);
@@ -439,6 +1105,15 @@ public class AionFaucetContractTest {
         return retryCount;
     }
 
+    private BigInteger getRecipientTotal(Address address) {
+        byte[] txData = ABIUtil.encodeMethodArguments("getRecipientTotal", address);
+        AvmRule.ResultWrapper result = avmRule.call(from, dappAddr, BigInteger.ZERO, txData);
+        TransactionStatus status1 = result.getReceiptStatus();
+        Assert.assertTrue(status1.isSuccess());
+
+        return (BigInteger)result.getDecodedReturnData();
+    }
+
     private long getRecipientLastRequestBlockNo(Address address) {
         byte[] txData = ABIUtil.encodeMethodArguments("getRecipientLastRequestBlockNo", address);
         AvmRule.ResultWrapper result = avmRule.call(from, dappAddr, BigInteger.ZERO, txData);
@@ -452,6 +1127,99 @@ public class AionFaucetContractTest {
         return lastRequestBlockNo;
     }
 
+    private AvmRule.ResultWrapper setClaimRoot(Address caller, byte[] root) {
+        byte[] txData = ABIUtil.encodeMethodArguments("setClaimRoot", (Object) root);
+        return avmRule.call(caller, dappAddr, BigInteger.ZERO, txData);
+    }
+
+    private AvmRule.ResultWrapper claim(Address caller, byte[][] proof, BigInteger amount) {
+        byte[] txData = ABIUtil.encodeMethodArguments("claim", proof, amount);
+        return avmRule.call(caller, dappAddr, BigInteger.ZERO, txData);
+    }
+
+    /**
+     * Leaves of a claim tree with dev1 (1 Aion), dev2 (2 Aion) and two other addresses
+     */
+    private static byte[][] claimLeaves() {
+        Address[] addresses = new Address[]{dev1, dev2, operator1, operator2};
+        byte[][] leaves = new byte[addresses.length][];
+        for (int i = 0; i < addresses.length; i++) {
+            byte[] amount = ONE_AION.multiply(BigInteger.valueOf(i + 1)).toByteArray();
+            ByteBuffer leaf = ByteBuffer.allocate(Address.LENGTH + 32);
+            leaf.put(addresses[i].toByteArray());
+            leaf.position(Address.LENGTH + 32 - amount.length);
+            leaf.put(amount);
+            leaves[i] = CryptoUtil.blake2b(leaf.array());
+        }
+        return leaves;
+    }
+
+    private static byte[] claimRoot(byte[][] leaves) {
+        byte[][] level = leaves;
+        while (level.length > 1)
+            level = claimParents(level);
+        return level[0];
+    }
+
+    private static byte[][] claimProof(byte[][] leaves, int index) {
+        List<byte[]> proof = new ArrayList<>();
+        byte[][] level = leaves;
+        while (level.length > 1) {
+            proof.add(level[index ^ 1]);
+            level = claimParents(level);
+            index /= 2;
+        }
+        return proof.toArray(new byte[0][]);
+    }
+
+    private static byte[][] claimParents(byte[][] level) {
+        byte[][] parents = new byte[level.length / 2][];
+        for (int i = 0; i < parents.length; i++) {
+            byte[] a = level[2 * i], b = level[2 * i + 1];
+            boolean ascending = Arrays.compareUnsigned(a, b) < 0;
+            ByteBuffer pair = ByteBuffer.allocate(64).put(ascending ? a : b).put(ascending ? b : a);
+            parents[i] = CryptoUtil.blake2b(pair.array());
+        }
+        return parents;
+    }
+
+    private AvmRule.ResultWrapper registerWithVoucher(Address caller, BigInteger amount, long expiry, long nonce,
+                                                      EdDSAPrivateKey operatorKey, byte[] signature) {
+        byte[] txData = ABIUtil.encodeMethodArguments("registerWithVoucher", amount, expiry, nonce, operatorKey.getAbyte(), signature);
+        return avmRule.call(caller, dappAddr, BigInteger.ZERO, txData);
+    }
+
+    private static EdDSAPrivateKey voucherKey(byte seed) {
+        byte[] seedBytes = new byte[32];
+        Arrays.fill(seedBytes, seed);
+        return new EdDSAPrivateKey(new EdDSAPrivateKeySpec(seedBytes, EdDSANamedCurveTable.getByName(EdDSANamedCurveTable.ED_25519)));
+    }
+
+    private static Address voucherOperator(EdDSAPrivateKey key) {
+        byte[] address = CryptoUtil.blake2b(key.getAbyte());
+        address[0] = (byte) 0xa0;
+        return new Address(address);
+    }
+
+    private byte[] signVoucher(EdDSAPrivateKey key, Address recipient, BigInteger amount, long expiry, long nonce) throws Exception {
+        byte[] amountBytes = amount.toByteArray();
+        ByteBuffer message = ByteBuffer.allocate(2 * Address.LENGTH + 32 + 2 * Long.BYTES);
+        message.put(dappAddr.toByteArray()).put(recipient.toByteArray());
+        message.position(2 * Address.LENGTH + 32 - amountBytes.length);
+        message.put(amountBytes).putLong(expiry).putLong(nonce);
+
+        EdDSAEngine engine = new EdDSAEngine(MessageDigest.getInstance(key.getParams().getHashAlgorithm()));
+        engine.initSign(key);
+        return engine.signOneShot(message.array());
+    }
+
+    /**
+     * Storage key of a recipient's record. See StorageKeys
+     */
+    private static byte[] recipientKey(Address address) {
+        return CryptoUtil.blake2b(ByteBuffer.allocate(1 + Address.LENGTH).put(StorageKeys.RECIPIENT).put(address.toByteArray()).array());
+    }
+
     private void allocateBalance(Address address, String balance) {
         avmRule.kernel.adjustBalance(new AionAddress(address.toByteArray()), new BigInteger(balance));
     }
@@ -25,4 +25,34 @@ public class StringUtilTest {
         Assert.assertEquals("ePa", tokens[6]);
 
     }
+
+    @Test
+    public void testSplitTrailingDelimiter() {
+        Assert.assertArrayEquals(new String[]{"a", "b"}, StringUtil.splits("a:b:", ':'));
+        Assert.assertArrayEquals(new String[]{"a", ""}, StringUtil.splits("a::", ':'));
+        Assert.assertArrayEquals(new String[]{"", "a"}, StringUtil.splits(":a", ':'));
+        Assert.assertArrayEquals(new String[]{""}, StringUtil.splits("", ':'));
+        Assert.assertArrayEquals(new String[]{"abc"}, StringUtil.splits("abc", ':'));
+    }
+
+    @Test
+    public void testTokenOffsets() {
+        String str = "0xa0,,0xa1,";
+
+        int[] offsets = StringUtil.tokenOffsets(str, ',');
+
+        Assert.assertEquals(3, StringUtil.countTokens(str, ','));
+        Assert.assertArrayEquals(new int[]{0, 4, 5, 5, 6, 10}, offsets);
+    }
+
+    @Test
+    public void testForEachToken() {
+        String str = "1:20:060408:adam@xxxxxxx.org::1QTjaYd7niiQA/sc:ePa";
+        String[] expected = StringUtil.splits(str, ':');
+
+        int count = StringUtil.forEachToken(str, ':',
+                (s, index, start, end) -> Assert.assertEquals(expected[index], s.substring(start, end)));
+
+        Assert.assertEquals(expected.length, count);
+    }
 }
@@ -0,0 +1,147 @@
+package com.bloxbean.contracts.benchmark;
+
+import avm.Address;
+import com.bloxbean.contracts.AionFaucetContract;
+import org.aion.avm.embed.AvmRule;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Energy, latency and storage benchmark for AionFaucetContract's callables with varying number of operators and recipients.
+ * Not part of the default test run. Run with: mvn test -Pbenchmark
+ *
+ * System properties:
+ * benchmark.output - JSON result file (default: target/benchmark/energy-results.json)
+ * benchmark.energy.tolerance - allowed relative energy increase over baseline (default: 0.05)
+ * benchmark.updateBaseline - write the measured energy as the new baseline instead of checking it (default: false)
+ */
+public class AionFaucetContractBenchmark {
+    private static final String BASELINE_RESOURCE = "/benchmark/energy-baseline.properties";
+    private static final String BASELINE_FILE = "src/test/resources/benchmark/energy-baseline.properties";
+
+    private static final int[] OPERATOR_COUNTS = {1, 10, 50};
+    private static final int[] RECIPIENT_COUNTS = {1, 100, 500};
+    private static final int REGISTRATION_BATCH_SIZE = 50;
+
+    private static BigInteger contractBalance = new BigInteger("2000000000000000000000"); //2000 Aion
+
+    private static BenchmarkReport report = new BenchmarkReport();
+
+    @Rule
+    public AvmRule avmRule = new AvmRule(false);
+
+    private FaucetHarness harness;
+    private Address owner;
+
+    @Before
+    public void deployDapp() {
+        harness = new FaucetHarness(avmRule);
+        harness.deploy(contractBalance);
+        owner = harness.getOwner();
+    }
+
+    @Test
+    public void benchmarkOperatorScaling() {
+        int added = 0;
+        for (int operatorCount : OPERATOR_COUNTS) {
+            while (added < operatorCount - 1) {
+                harness.call(owner, "addOperator", harness.fundedAccount(FaucetHarness.GROUP_OPERATOR, added++));
+            }
+
+            String suffix = ".operators" + operatorCount;
+            Address operator = FaucetHarness.account(FaucetHarness.GROUP_OPERATOR, added++);
+            report.add(harness.measure("addOperator" + suffix, owner, "addOperator", operator));
+            report.add(harness.measure("getOperators" + suffix, owner, "getOperators"));
+
+            Address recipient = FaucetHarness.account(FaucetHarness.GROUP_RECIPIENT, operatorCount);
+            report.add(harness.measure("registerAddress" + suffix, operator, "registerAddress", recipient));
+            report.add(harness.measure("rebalanceOperators" + suffix, owner, "rebalanceOperators",
+                    0, AionFaucetContract.MAX_OPERATOR_PAGE_SIZE));
+        }
+    }
+
+    @Test
+    public void benchmarkRecipientScaling() {
+        Address operator = harness.fundedAccount(FaucetHarness.GROUP_OPERATOR, 0);
+        harness.call(owner, "addOperator", operator);
+        harness.call(owner, "setMinBlockDelay", 1L);
+
+        int registered = 0;
+        for (int recipientCount : RECIPIENT_COUNTS) {
+            while (registered < recipientCount - 1) {
+                int size = Math.min(REGISTRATION_BATCH_SIZE, recipientCount - 1 - registered);
+                Address[] batch = new Address[size];
+                for (int i = 0; i < size; i++)
+                    batch[i] = harness.fundedAccount(FaucetHarness.GROUP_RECIPIENT, registered++);
+
+                harness.call(operator, "registerAddresses", (Object) batch);
+            }
+
+            String suffix = ".recipients" + recipientCount;
+            Address recipient = harness.fundedAccount(FaucetHarness.GROUP_RECIPIENT, registered++);
+
+            report.add(harness.measure("registerAddress" + suffix, operator, "registerAddress", recipient));
+            avmRule.kernel.generateBlock();
+            report.add(harness.measure("canRequest" + suffix, recipient, "canRequest", recipient));
+            report.add(harness.measure("topUp" + suffix, recipient, "topUp"));
+            report.add(harness.measure("isAddressRegistered" + suffix, owner, "isAddressRegistered", recipient));
+            report.add(harness.measure("getRecipientRetryCount" + suffix, owner, "getRecipientRetryCount", recipient));
+            report.add(harness.measure("getRecipientTotal" + suffix, owner, "getRecipientTotal", recipient));
+            report.add(harness.measure("getRecipientLastRequestBlockNo" + suffix, owner, "getRecipientLastRequestBlockNo", recipient));
+            report.add(harness.measure("getTotalRecipients" + suffix, owner, "getTotalRecipients"));
+        }
+    }
+
+    @Test
+    public void benchmarkRegisterAddressesBatch() {
+        Address operator = harness.fundedAccount(FaucetHarness.GROUP_OPERATOR, 0);
+        harness.call(owner, "addOperator", operator);
+
+        int registered = 0;
+        for (int batchSize : new int[]{1, 10, REGISTRATION_BATCH_SIZE}) {
+            Address[] batch = new Address[batchSize];
+            for (int i = 0; i < batchSize; i++)
+                batch[i] = FaucetHarness.account(FaucetHarness.GROUP_RECIPIENT, registered++);
+
+            report.add(harness.measure("registerAddresses.batch" + batchSize, operator, "registerAddresses", (Object) batch));
+        }
+    }
+
+    @Test
+    public void benchmarkConfigurationGetters() {
+        report.add(harness.measure("getOwner", owner, "getOwner"));
+        report.add(harness.measure("getTopupAmount", owner, "getTopupAmount"));
+        report.add(harness.measure("getInitialTopupAmount", owner, "getInitialTopupAmount"));
+        report.add(harness.measure("getContractMinimumBalance", owner, "getContractMinimumBalance"));
+        report.add(harness.measure("getMinBlockDelay", owner, "getMinBlockDelay"));
+    }
+
+    @AfterClass
+    public static void writeReport() throws IOException {
+        Path output = Paths.get(System.getProperty("benchmark.output", "target/benchmark/energy-results.json"));
+        report.writeJson(output);
+        System.out.println("Benchmark results written to " + output.toAbsolutePath());
+
+        for (Measurement measurement : report.getMeasurements())
+            Assert.assertTrue(measurement.getScenario() + " failed", measurement.isSuccess());
+
+        if (Boolean.getBoolean("benchmark.updateBaseline")) {
+            report.writeBaseline(Paths.get(BASELINE_FILE));
+            return;
+        }
+
+        double tolerance = Double.parseDouble(System.getProperty("benchmark.energy.tolerance", "0.05"));
+        List<String> regressions = report.findRegressions(BenchmarkReport.loadBaseline(BASELINE_RESOURCE), tolerance);
+        if (!regressions.isEmpty())
+            Assert.fail("Energy regression beyond " + (tolerance * 100) + "%:\n" + String.join("\n", regressions));
+    }
+}
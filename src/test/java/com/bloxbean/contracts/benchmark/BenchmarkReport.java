@@ -0,0 +1,105 @@
+package com.bloxbean.contracts.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Collects {@link Measurement}s, writes them as JSON and compares energy usage against a baseline.
+ * The baseline is a properties file of scenario=energy entries. A scenario regresses when its energy exceeds
+ * baseline * (1 + tolerance). Once a baseline has been recorded, a scenario without a baseline entry fails as well,
+ * so that new scenarios are recorded. Until then, missing entries are only reported.
+ */
+public class BenchmarkReport {
+    private final List<Measurement> measurements = new ArrayList<>();
+
+    public void add(Measurement measurement) {
+        measurements.add(measurement);
+        System.out.println(measurement);
+    }
+
+    public List<Measurement> getMeasurements() {
+        return measurements;
+    }
+
+    public void writeJson(Path file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[\n");
+        for (int i = 0; i < measurements.size(); i++) {
+            Measurement m = measurements.get(i);
+            sb.append("  {\"scenario\": \"").append(m.getScenario()).append('"')
+                    .append(", \"method\": \"").append(m.getMethod()).append('"')
+                    .append(", \"success\": ").append(m.isSuccess())
+                    .append(", \"energyUsed\": ").append(m.getEnergyUsed())
+                    .append(", \"latencyNanos\": ").append(m.getLatencyNanos())
+                    .append(", \"storageBytesWritten\": ").append(m.getStorageBytesWritten())
+                    .append('}');
+            sb.append(i < measurements.size() - 1 ? ",\n" : "\n");
+        }
+        sb.append("]\n");
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write the current energy numbers as a new baseline
+     * @param file
+     * @throws IOException
+     */
+    public void writeBaseline(Path file) throws IOException {
+        TreeMap<String, String> sorted = new TreeMap<>();
+        for (Measurement m : measurements)
+            sorted.put(m.getScenario(), String.valueOf(m.getEnergyUsed()));
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("# Energy baseline for AionFaucetContractBenchmark. Regenerate with -Dbenchmark.updateBaseline=true\n");
+        for (String scenario : sorted.keySet())
+            sb.append(scenario).append('=').append(sorted.get(scenario)).append('\n');
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Compare with baseline
+     * @param baseline scenario=energy entries
+     * @param tolerance allowed relative increase, e.g. 0.05 for 5%
+     * @return description of each regressed scenario. Empty if none.
+     */
+    public List<String> findRegressions(Properties baseline, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        for (Measurement m : measurements) {
+            String expected = baseline.getProperty(m.getScenario());
+            if (expected == null) {
+                String missing = m.getScenario() + ": no baseline entry, record it with -Dbenchmark.updateBaseline=true";
+                if (baseline.isEmpty())
+                    System.out.println(missing);
+                else
+                    regressions.add(missing);
+                continue;
+            }
+
+            long baselineEnergy = Long.parseLong(expected.trim());
+            if (m.getEnergyUsed() > baselineEnergy * (1 + tolerance)) {
+                regressions.add(m.getScenario() + ": " + m.getEnergyUsed() + " > baseline " + baselineEnergy);
+            }
+        }
+        return regressions;
+    }
+
+    public static Properties loadBaseline(String resource) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = BenchmarkReport.class.getResourceAsStream(resource)) {
+            if (in != null)
+                properties.load(in);
+        }
+        return properties;
+    }
+}
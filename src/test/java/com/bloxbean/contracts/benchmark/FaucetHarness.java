@@ -0,0 +1,175 @@
+package com.bloxbean.contracts.benchmark;
+
+import avm.Address;
+import com.bloxbean.contracts.AionFaucetContract;
+import com.bloxbean.contracts.FaucetEvent;
+import com.bloxbean.contracts.StorageCodec;
+import com.bloxbean.contracts.StorageKeys;
+import org.aion.avm.core.crypto.CryptoUtil;
+import org.aion.avm.embed.AvmRule;
+import org.aion.avm.tooling.ABIUtil;
+import org.aion.avm.userlib.AionMap;
+import org.aion.avm.userlib.AionSet;
+import org.aion.types.AionAddress;
+import org.junit.Assert;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Deploys AionFaucetContract on an embedded AVM ({@link AvmRule}) and measures the cost of each call.
+ */
+public class FaucetHarness {
+    public static final long ENERGY_LIMIT = 5_000_000L;
+    public static final long ENERGY_PRICE = 1L;
+
+    public static final int GROUP_OPERATOR = 1;
+    public static final int GROUP_RECIPIENT = 2;
+
+    private static final BigInteger ACCOUNT_BALANCE = new BigInteger("100000000000000000000"); //100 Aion
+
+    private final AvmRule avmRule;
+    private final Address deployer;
+    private final Address owner;
+    private final StorageTracer tracer;
+    private Address dappAddr;
+
+    public FaucetHarness(AvmRule avmRule) {
+        this.avmRule = avmRule;
+        this.deployer = avmRule.getPreminedAccount();
+        this.owner = account(0, 0);
+        this.tracer = new StorageTracer(avmRule);
+    }
+
+    /**
+     * Deploy the contract with {@link #getOwner()} as owner and transfer contractBalance to it
+     * @param contractBalance
+     * @return dapp address
+     */
+    public Address deploy(BigInteger contractBalance) {
+        byte[] deploymentArgs = ABIUtil.encodeDeploymentArguments(owner);
+        byte[] dapp = avmRule.getDappBytes(AionFaucetContract.class, deploymentArgs, 1, FaucetEvent.class, StorageKeys.class, StorageCodec.class, AionMap.class, AionSet.class);
+        dappAddr = avmRule.deploy(deployer, BigInteger.ZERO, dapp).getDappAddress();
+
+        avmRule.kernel.adjustBalance(toAionAddress(deployer), contractBalance.add(ACCOUNT_BALANCE));
+        AvmRule.ResultWrapper result = avmRule.balanceTransfer(deployer, dappAddr, contractBalance, ENERGY_LIMIT, ENERGY_PRICE);
+        Assert.assertTrue(result.getReceiptStatus().isSuccess());
+
+        avmRule.kernel.adjustBalance(toAionAddress(owner), ACCOUNT_BALANCE);
+        return dappAddr;
+    }
+
+    /**
+     * Deterministic account address. Accounts of different groups never collide.
+     * @param group
+     * @param index
+     * @return account address
+     */
+    public static Address account(int group, int index) {
+        byte[] bytes = new byte[Address.LENGTH];
+        bytes[0] = (byte) 0xa0;
+        bytes[1] = (byte) group;
+        bytes[28] = (byte) (index >>> 24);
+        bytes[29] = (byte) (index >>> 16);
+        bytes[30] = (byte) (index >>> 8);
+        bytes[31] = (byte) index;
+        return new Address(bytes);
+    }
+
+    /**
+     * Deterministic account with some balance to pay for energy
+     * @param group
+     * @param index
+     * @return account address
+     */
+    public Address fundedAccount(int group, int index) {
+        Address address = account(group, index);
+        avmRule.kernel.adjustBalance(toAionAddress(address), ACCOUNT_BALANCE);
+        return address;
+    }
+
+    /**
+     * Call a method and measure energy, wall-clock latency and storage bytes written.
+     * The call runs through a {@link StorageTracer}, so that writes to every storage key of the contract are counted.
+     * @param scenario name of the scenario this measurement belongs to
+     * @param caller
+     * @param method
+     * @param args
+     * @return measurement
+     */
+    public Measurement measure(String scenario, Address caller, String method, Object... args) {
+        AionAddress contract = toAionAddress(dappAddr);
+        byte[] graphBefore = avmRule.kernel.getObjectGraph(contract);
+
+        long start = System.nanoTime();
+        TransactionTrace trace = tracer.call(scenario, caller, dappAddr, method, args);
+        long latency = System.nanoTime() - start;
+
+        byte[] graphAfter = avmRule.kernel.getObjectGraph(contract);
+        long bytesWritten = graphAfter != null && !Arrays.equals(graphBefore, graphAfter) ? graphAfter.length : 0;
+
+        String contractHex = StorageTracer.toHex(dappAddr.toByteArray());
+        for (StorageAccess access : trace.getAccesses()) {
+            if (access.getKind() == StorageAccess.Kind.STORAGE_WRITE && access.getAddress().equals(contractHex))
+                bytesWritten += access.getBytes();
+        }
+
+        return new Measurement(scenario, method, trace.isSuccess(), trace.getEnergyUsed(), latency, bytesWritten);
+    }
+
+    /**
+     * Call a method, assert success and return the decoded return data
+     * @param caller
+     * @param method
+     * @param args
+     * @return decoded return data
+     */
+    public Object call(Address caller, String method, Object... args) {
+        byte[] txData = ABIUtil.encodeMethodArguments(method, args);
+        AvmRule.ResultWrapper result = avmRule.call(caller, dappAddr, BigInteger.ZERO, txData, ENERGY_LIMIT, ENERGY_PRICE);
+        Assert.assertTrue(method + " failed", result.getReceiptStatus().isSuccess());
+
+        return result.getDecodedReturnData();
+    }
+
+    public AvmRule getAvmRule() {
+        return avmRule;
+    }
+
+    public Address getOwner() {
+        return owner;
+    }
+
+    public Address getDappAddress() {
+        return dappAddr;
+    }
+
+    /**
+     * @return size of the contract's serialized static fields
+     */
+    public int graphBytes() {
+        byte[] graph = avmRule.kernel.getObjectGraph(toAionAddress(dappAddr));
+        return graph != null ? graph.length : 0;
+    }
+
+    /**
+     * @param recipient
+     * @return size of the recipient's storage record, 0 if not registered
+     */
+    public int recipientRecordBytes(Address recipient) {
+        byte[] record = avmRule.kernel.getStorage(toAionAddress(dappAddr), recipientKey(recipient));
+        return record != null ? record.length : 0;
+    }
+
+    /**
+     * Storage key of a recipient's record. See StorageKeys
+     */
+    private static byte[] recipientKey(Address address) {
+        return CryptoUtil.blake2b(ByteBuffer.allocate(1 + Address.LENGTH).put(StorageKeys.RECIPIENT).put(address.toByteArray()).array());
+    }
+
+    public static AionAddress toAionAddress(Address address) {
+        return new AionAddress(address.toByteArray());
+    }
+}
@@ -0,0 +1,56 @@
+package com.bloxbean.contracts.benchmark;
+
+/**
+ * Cost of a single contract call executed through {@link FaucetHarness}
+ */
+public class Measurement {
+    private final String scenario;
+    private final String method;
+    private final boolean success;
+    private final long energyUsed;
+    private final long latencyNanos;
+    private final long storageBytesWritten;
+
+    public Measurement(String scenario, String method, boolean success, long energyUsed, long latencyNanos, long storageBytesWritten) {
+        this.scenario = scenario;
+        this.method = method;
+        this.success = success;
+        this.energyUsed = energyUsed;
+        this.latencyNanos = latencyNanos;
+        this.storageBytesWritten = storageBytesWritten;
+    }
+
+    public String getScenario() {
+        return scenario;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public long getEnergyUsed() {
+        return energyUsed;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * Bytes written to the contract's storage entries by the call, plus the static graph's size if it was changed
+     * @return
+     */
+    public long getStorageBytesWritten() {
+        return storageBytesWritten;
+    }
+
+    @Override
+    public String toString() {
+        return scenario + " energy=" + energyUsed + " latencyMicros=" + (latencyNanos / 1000) + " storageBytes=" + storageBytesWritten
+                + (success ? "" : " FAILED");
+    }
+}
@@ -0,0 +1,69 @@
+package com.bloxbean.contracts.benchmark;
+
+/**
+ * Aggregated {@link Measurement}s of one callable
+ */
+public class OperationStats {
+    private final String method;
+    private long calls;
+    private long successes;
+    private long energyUsed;
+    private long maxEnergyUsed;
+    private long latencyNanos;
+
+    public OperationStats(String method) {
+        this.method = method;
+    }
+
+    public void add(Measurement measurement) {
+        calls++;
+        if (measurement.isSuccess())
+            successes++;
+        energyUsed += measurement.getEnergyUsed();
+        maxEnergyUsed = Math.max(maxEnergyUsed, measurement.getEnergyUsed());
+        latencyNanos += measurement.getLatencyNanos();
+    }
+
+    /**
+     * Add the calls of another set of stats of the same method, e.g. of another shard
+     */
+    public void merge(OperationStats other) {
+        calls += other.calls;
+        successes += other.successes;
+        energyUsed += other.energyUsed;
+        maxEnergyUsed = Math.max(maxEnergyUsed, other.maxEnergyUsed);
+        latencyNanos += other.latencyNanos;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getSuccesses() {
+        return successes;
+    }
+
+    public long getEnergyUsed() {
+        return energyUsed;
+    }
+
+    public long getMaxEnergyUsed() {
+        return maxEnergyUsed;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public long getAverageEnergyUsed() {
+        return calls == 0 ? 0 : energyUsed / calls;
+    }
+
+    public long getAverageLatencyNanos() {
+        return calls == 0 ? 0 : latencyNanos / calls;
+    }
+}
@@ -0,0 +1,75 @@
+package com.bloxbean.contracts.benchmark;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What-if study of minBlockDelay, topup amount and operator count, run as shards on all cores with
+ * {@link ParallelScenarioRunner}. Not part of the default test run. Run with: mvn test -Pbenchmark
+ *
+ * System properties:
+ * benchmark.parallel.recipients - final population of each variant (default: 20000)
+ * benchmark.parallel.shards - shards per variant (default: no of available processors)
+ * benchmark.parallel.threads - thread pool size (default: no of available processors)
+ * benchmark.parallel.output - output file without extension. Written as .csv and .json (default: target/benchmark/parallel)
+ */
+public class ParallelScenarioBenchmark {
+    private static final long[] MIN_BLOCK_DELAYS = {8640, 360};
+    private static final long[] TOPUP_AMOUNTS = {1, 5};
+    private static final int[] OPERATOR_COUNTS = {1, 8};
+
+    @Test
+    public void runWhatIfStudy() throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int recipients = Integer.getInteger("benchmark.parallel.recipients", 20000);
+        int shards = Integer.getInteger("benchmark.parallel.shards", cores);
+
+        List<ScaleScenario> variants = new ArrayList<>();
+        List<ScaleScenario> allShards = new ArrayList<>();
+        for (long minBlockDelay : MIN_BLOCK_DELAYS) {
+            for (long topupAmount : TOPUP_AMOUNTS) {
+                for (int operators : OPERATOR_COUNTS) {
+                    ScaleScenario variant = new ScaleScenario("delay" + minBlockDelay + ".topup" + topupAmount + ".operators" + operators,
+                            recipients, operators);
+                    variant.setMinBlockDelay(minBlockDelay);
+                    variant.setTopupAmount(BigInteger.valueOf(topupAmount));
+
+                    variants.add(variant);
+                    allShards.addAll(ParallelScenarioRunner.shard(variant, shards));
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        List<ScaleCheckpoint> checkpoints = new ParallelScenarioRunner(Integer.getInteger("benchmark.parallel.threads", cores)).run(allShards);
+        System.out.println(allShards.size() + " shards finished in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        ScaleReport report = new ScaleReport();
+        for (ScaleCheckpoint checkpoint : checkpoints)
+            report.add(checkpoint);
+
+        //Each variant's merged checkpoints cover at least its populations
+        int index = 0;
+        for (ScaleScenario variant : variants) {
+            for (int population : variant.getCheckpoints()) {
+                ScaleCheckpoint checkpoint = checkpoints.get(index++);
+                Assert.assertEquals(variant.getName(), checkpoint.getScenario());
+                Assert.assertTrue(checkpoint.getPopulation() >= population);
+            }
+        }
+        Assert.assertEquals(index, checkpoints.size());
+
+        String output = System.getProperty("benchmark.parallel.output", "target/benchmark/parallel");
+        Path csv = Paths.get(output + ".csv");
+        report.writeCsv(csv);
+        report.writeJson(Paths.get(output + ".json"));
+        System.out.println("What-if results written to " + csv.toAbsolutePath().getParent());
+    }
+}
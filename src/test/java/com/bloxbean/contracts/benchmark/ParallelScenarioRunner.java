@@ -0,0 +1,140 @@
+package com.bloxbean.contracts.benchmark;
+
+import org.aion.avm.embed.AvmRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs {@link ScaleSimulation}s on a thread pool. A scenario is split into independent shards, each with its own
+ * embedded AVM, contract deployment and address range, and the checkpoints of the shards are merged afterwards.
+ * Shards of different scenarios, e.g. the variants of a what-if study, run on the same pool.
+ */
+public class ParallelScenarioRunner {
+    private final int threads;
+
+    /**
+     * @param threads no of shards run at the same time
+     */
+    public ParallelScenarioRunner(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads must be positive");
+
+        this.threads = threads;
+    }
+
+    /**
+     * Split a scenario into shards. Each shard gets an equal part of every checkpoint population and of the calls per
+     * block, so that the merged checkpoints cover the same population and workload. The operators aren't split, each
+     * shard's contract has all of the scenario's operators, so that the operator count varies the same as without shards.
+     * Shards use disjoint account ranges and different random seeds.
+     * @param scenario
+     * @param shards no of shards
+     * @return shard scenarios, all with the scenario's name
+     */
+    public static List<ScaleScenario> shard(ScaleScenario scenario, int shards) {
+        int[] checkpoints = scenario.getCheckpoints();
+        if (shards <= 0 || shards > checkpoints[0])
+            throw new IllegalArgumentException("Invalid no of shards: " + shards);
+
+        int callsPerCheckpoint = scenario.getBlocksPerCheckpoint() * scenario.getCallsPerBlock();
+        int addressStride = scenario.getRecipients() + checkpoints.length * callsPerCheckpoint + scenario.getOperators();
+
+        List<ScaleScenario> result = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            int[] shardCheckpoints = new int[checkpoints.length];
+            for (int c = 0; c < checkpoints.length; c++)
+                shardCheckpoints[c] = share(checkpoints[c], shards, i);
+
+            ScaleScenario shard = new ScaleScenario(scenario.getName(), shardCheckpoints[checkpoints.length - 1],
+                    scenario.getOperators());
+            shard.setCheckpoints(shardCheckpoints);
+            shard.setBlocksPerCheckpoint(scenario.getBlocksPerCheckpoint());
+            shard.setCallsPerBlock(Math.max(1, share(scenario.getCallsPerBlock(), shards, i)));
+            shard.setCallMix(scenario.getRegisterWeight(), scenario.getTopUpWeight(), scenario.getCanRequestWeight());
+            shard.setMinBlockDelay(scenario.getMinBlockDelay());
+            shard.setTopupAmount(scenario.getTopupAmount());
+            shard.setAddressOffset(scenario.getAddressOffset() + i * addressStride);
+            shard.setSeed(scenario.getSeed() + i);
+            result.add(shard);
+        }
+        return result;
+    }
+
+    /**
+     * Run all shards and merge the checkpoints of shards with the same scenario name
+     * @param shards
+     * @return merged checkpoints, grouped by scenario in the order of the first shard of each scenario
+     */
+    public List<ScaleCheckpoint> run(List<ScaleScenario> shards) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<ScaleCheckpoint>>> futures = new ArrayList<>();
+            for (ScaleScenario shard : shards)
+                futures.add(executor.submit(() -> runShard(shard)));
+
+            Map<String, List<ScaleCheckpoint>> merged = new LinkedHashMap<>();
+            for (Future<List<ScaleCheckpoint>> future : futures) {
+                List<ScaleCheckpoint> checkpoints = future.get();
+                if (checkpoints.isEmpty())
+                    continue;
+
+                List<ScaleCheckpoint> scenario = merged.get(checkpoints.get(0).getScenario());
+                if (scenario == null) {
+                    merged.put(checkpoints.get(0).getScenario(), new ArrayList<>(checkpoints));
+                } else {
+                    for (int i = 0; i < checkpoints.size(); i++)
+                        scenario.set(i, scenario.get(i).merge(checkpoints.get(i)));
+                }
+            }
+
+            List<ScaleCheckpoint> result = new ArrayList<>();
+            for (List<ScaleCheckpoint> checkpoints : merged.values())
+                result.addAll(checkpoints);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shards", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Shard failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Run a shard on a new embedded AVM. The rule is applied outside of JUnit, so that each thread has its own instance.
+     */
+    private static List<ScaleCheckpoint> runShard(ScaleScenario shard) throws Exception {
+        AvmRule avmRule = new AvmRule(false);
+        List<List<ScaleCheckpoint>> result = new ArrayList<>();
+
+        Statement simulation = new Statement() {
+            @Override
+            public void evaluate() {
+                result.add(new ScaleSimulation(avmRule, shard).run());
+            }
+        };
+
+        try {
+            avmRule.apply(simulation, Description.EMPTY).evaluate();
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+        return result.get(0);
+    }
+
+    private static int share(int total, int shards, int shard) {
+        return total / shards + (shard < total % shards ? 1 : 0);
+    }
+}
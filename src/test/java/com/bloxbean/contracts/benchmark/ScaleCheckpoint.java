@@ -0,0 +1,96 @@
+package com.bloxbean.contracts.benchmark;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Call costs and contract state size of a {@link ScaleSimulation} at one population
+ */
+public class ScaleCheckpoint {
+    private final String scenario;
+    private final int population;
+    private final Map<String, OperationStats> operations = new LinkedHashMap<>();
+    private long blockNumber;
+    private long graphBytes;
+    private long storageBytes;
+
+    public ScaleCheckpoint(String scenario, int population) {
+        this.scenario = scenario;
+        this.population = population;
+    }
+
+    public void add(Measurement measurement) {
+        operations.computeIfAbsent(measurement.getMethod(), OperationStats::new).add(measurement);
+    }
+
+    /**
+     * Combine the checkpoints of two shards of a scenario. Populations, operations and storage sizes are added up.
+     * The graph size and block number are the larger of the two, as each shard has its own contract and chain.
+     * @param other checkpoint of another shard
+     * @return merged checkpoint
+     */
+    public ScaleCheckpoint merge(ScaleCheckpoint other) {
+        ScaleCheckpoint merged = new ScaleCheckpoint(scenario, population + other.population);
+        for (ScaleCheckpoint checkpoint : new ScaleCheckpoint[]{this, other}) {
+            for (OperationStats stats : checkpoint.getOperations())
+                merged.operations.computeIfAbsent(stats.getMethod(), OperationStats::new).merge(stats);
+        }
+        merged.blockNumber = Math.max(blockNumber, other.blockNumber);
+        merged.graphBytes = Math.max(graphBytes, other.graphBytes);
+        merged.storageBytes = storageBytes + other.storageBytes;
+        return merged;
+    }
+
+    public String getScenario() {
+        return scenario;
+    }
+
+    /**
+     * @return no of registered recipients when the measured calls started
+     */
+    public int getPopulation() {
+        return population;
+    }
+
+    public Collection<OperationStats> getOperations() {
+        return operations.values();
+    }
+
+    public OperationStats getOperation(String method) {
+        return operations.get(method);
+    }
+
+    /**
+     * @return block number after the measured calls
+     */
+    public long getBlockNumber() {
+        return blockNumber;
+    }
+
+    public void setBlockNumber(long blockNumber) {
+        this.blockNumber = blockNumber;
+    }
+
+    /**
+     * @return size of the contract's serialized static fields
+     */
+    public long getGraphBytes() {
+        return graphBytes;
+    }
+
+    public void setGraphBytes(long graphBytes) {
+        this.graphBytes = graphBytes;
+    }
+
+    /**
+     * @return total size of the recipient records in storage
+     */
+    public long getStorageBytes() {
+        return storageBytes;
+    }
+
+    public void setStorageBytes(long storageBytes) {
+        this.storageBytes = storageBytes;
+    }
+}
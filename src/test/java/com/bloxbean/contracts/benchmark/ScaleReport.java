@@ -0,0 +1,77 @@
+package com.bloxbean.contracts.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects {@link ScaleCheckpoint}s and writes them as CSV or JSON, one row per checkpoint and callable
+ */
+public class ScaleReport {
+    private final List<ScaleCheckpoint> checkpoints = new ArrayList<>();
+
+    public void add(ScaleCheckpoint checkpoint) {
+        checkpoints.add(checkpoint);
+        for (OperationStats stats : checkpoint.getOperations()) {
+            System.out.println(checkpoint.getScenario() + " population=" + checkpoint.getPopulation()
+                    + " " + stats.getMethod() + " calls=" + stats.getCalls() + " avgEnergy=" + stats.getAverageEnergyUsed()
+                    + " graphBytes=" + checkpoint.getGraphBytes() + " storageBytes=" + checkpoint.getStorageBytes());
+        }
+    }
+
+    public List<ScaleCheckpoint> getCheckpoints() {
+        return checkpoints;
+    }
+
+    public void writeCsv(Path file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("scenario,population,blockNumber,method,calls,successes,avgEnergyUsed,maxEnergyUsed,avgLatencyNanos,graphBytes,storageBytes\n");
+        for (ScaleCheckpoint checkpoint : checkpoints) {
+            for (OperationStats stats : checkpoint.getOperations()) {
+                sb.append(checkpoint.getScenario()).append(',')
+                        .append(checkpoint.getPopulation()).append(',')
+                        .append(checkpoint.getBlockNumber()).append(',')
+                        .append(stats.getMethod()).append(',')
+                        .append(stats.getCalls()).append(',')
+                        .append(stats.getSuccesses()).append(',')
+                        .append(stats.getAverageEnergyUsed()).append(',')
+                        .append(stats.getMaxEnergyUsed()).append(',')
+                        .append(stats.getAverageLatencyNanos()).append(',')
+                        .append(checkpoint.getGraphBytes()).append(',')
+                        .append(checkpoint.getStorageBytes()).append('\n');
+            }
+        }
+
+        write(file, sb);
+    }
+
+    public void writeJson(Path file) throws IOException {
+        List<String> rows = new ArrayList<>();
+        for (ScaleCheckpoint checkpoint : checkpoints) {
+            for (OperationStats stats : checkpoint.getOperations()) {
+                rows.add("  {\"scenario\": \"" + checkpoint.getScenario() + '"'
+                        + ", \"population\": " + checkpoint.getPopulation()
+                        + ", \"blockNumber\": " + checkpoint.getBlockNumber()
+                        + ", \"method\": \"" + stats.getMethod() + '"'
+                        + ", \"calls\": " + stats.getCalls()
+                        + ", \"successes\": " + stats.getSuccesses()
+                        + ", \"avgEnergyUsed\": " + stats.getAverageEnergyUsed()
+                        + ", \"maxEnergyUsed\": " + stats.getMaxEnergyUsed()
+                        + ", \"avgLatencyNanos\": " + stats.getAverageLatencyNanos()
+                        + ", \"graphBytes\": " + checkpoint.getGraphBytes()
+                        + ", \"storageBytes\": " + checkpoint.getStorageBytes()
+                        + '}');
+            }
+        }
+
+        write(file, new StringBuilder("[\n").append(String.join(",\n", rows)).append(rows.isEmpty() ? "]\n" : "\n]\n"));
+    }
+
+    private static void write(Path file, StringBuilder sb) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,155 @@
+package com.bloxbean.contracts.benchmark;
+
+import java.math.BigInteger;
+
+/**
+ * Parameters of a {@link ScaleSimulation}. The recipient base is registered in bulk up to each checkpoint population,
+ * then blocksPerCheckpoint blocks of callsPerBlock calls are measured. Each call is registerAddress, topUp or
+ * canRequest, picked at random by weight.
+ */
+public class ScaleScenario {
+    private final String name;
+    private final int recipients;
+    private final int operators;
+
+    private int[] checkpoints;
+    private int blocksPerCheckpoint = 10;
+    private int callsPerBlock = 20;
+    private int registerWeight = 15;
+    private int topUpWeight = 35;
+    private int canRequestWeight = 50;
+    private long minBlockDelay = 8640;
+    private BigInteger topupAmount = BigInteger.ONE;
+    private int addressOffset;
+    private long seed = 1;
+
+    /**
+     * @param name scenario name, used as prefix of the reported rows
+     * @param recipients population at the last checkpoint
+     * @param operators no of operators, registrations are spread over them
+     */
+    public ScaleScenario(String name, int recipients, int operators) {
+        if (recipients <= 0 || operators <= 0)
+            throw new IllegalArgumentException("recipients and operators must be positive");
+
+        this.name = name;
+        this.recipients = recipients;
+        this.operators = operators;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getRecipients() {
+        return recipients;
+    }
+
+    public int getOperators() {
+        return operators;
+    }
+
+    /**
+     * @return populations at which calls are measured. Default: 1000, 10000, ... below recipients, and recipients
+     */
+    public int[] getCheckpoints() {
+        if (checkpoints != null)
+            return checkpoints;
+
+        int count = 1;
+        for (long p = 1000; p < recipients; p *= 10)
+            count++;
+
+        int[] defaults = new int[count];
+        long population = 1000;
+        for (int i = 0; i < count - 1; i++, population *= 10)
+            defaults[i] = (int) population;
+        defaults[count - 1] = recipients;
+        return defaults;
+    }
+
+    public void setCheckpoints(int[] checkpoints) {
+        this.checkpoints = checkpoints;
+    }
+
+    public int getBlocksPerCheckpoint() {
+        return blocksPerCheckpoint;
+    }
+
+    public void setBlocksPerCheckpoint(int blocksPerCheckpoint) {
+        this.blocksPerCheckpoint = blocksPerCheckpoint;
+    }
+
+    public int getCallsPerBlock() {
+        return callsPerBlock;
+    }
+
+    public void setCallsPerBlock(int callsPerBlock) {
+        this.callsPerBlock = callsPerBlock;
+    }
+
+    public int getRegisterWeight() {
+        return registerWeight;
+    }
+
+    public int getTopUpWeight() {
+        return topUpWeight;
+    }
+
+    public int getCanRequestWeight() {
+        return canRequestWeight;
+    }
+
+    /**
+     * Relative weights of the calls in a measured block
+     */
+    public void setCallMix(int registerWeight, int topUpWeight, int canRequestWeight) {
+        if (registerWeight < 0 || topUpWeight < 0 || canRequestWeight < 0 || registerWeight + topUpWeight + canRequestWeight == 0)
+            throw new IllegalArgumentException("Invalid call mix");
+
+        this.registerWeight = registerWeight;
+        this.topUpWeight = topUpWeight;
+        this.canRequestWeight = canRequestWeight;
+    }
+
+    public long getMinBlockDelay() {
+        return minBlockDelay;
+    }
+
+    /**
+     * Contract's minBlockDelay, see AionFaucetContract.setMinBlockDelay
+     */
+    public void setMinBlockDelay(long minBlockDelay) {
+        this.minBlockDelay = minBlockDelay;
+    }
+
+    public BigInteger getTopupAmount() {
+        return topupAmount;
+    }
+
+    /**
+     * Contract's topup amount in Aion
+     */
+    public void setTopupAmount(BigInteger topupAmount) {
+        this.topupAmount = topupAmount;
+    }
+
+    public int getAddressOffset() {
+        return addressOffset;
+    }
+
+    /**
+     * Index of the first recipient and operator account, see {@link FaucetHarness#account(int, int)}
+     */
+    public void setAddressOffset(int addressOffset) {
+        this.addressOffset = addressOffset;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
@@ -0,0 +1,124 @@
+package com.bloxbean.contracts.benchmark;
+
+import avm.Address;
+import org.aion.avm.embed.AvmRule;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Grows the contract's recipient base on an embedded AVM and measures a mix of registerAddress, topUp and canRequest
+ * calls at each population of a {@link ScaleScenario}, together with the contract's state size.
+ */
+public class ScaleSimulation {
+    private static final BigInteger ONE_AION = new BigInteger("1000000000000000000");
+    private static final int REGISTRATION_BATCH_SIZE = 50;
+
+    private final AvmRule avmRule;
+    private final ScaleScenario scenario;
+    private final FaucetHarness harness;
+    private final Random random;
+
+    private Address owner;
+    private Address[] operators;
+    private int registered;
+    private int nextOperator;
+
+    public ScaleSimulation(AvmRule avmRule, ScaleScenario scenario) {
+        this.avmRule = avmRule;
+        this.scenario = scenario;
+        this.harness = new FaucetHarness(avmRule);
+        this.random = new Random(scenario.getSeed());
+    }
+
+    /**
+     * Deploy the contract and run the scenario
+     * @return one checkpoint per population, in increasing order
+     */
+    public List<ScaleCheckpoint> run() {
+        setup();
+
+        List<ScaleCheckpoint> checkpoints = new ArrayList<>();
+        for (int population : scenario.getCheckpoints()) {
+            registerUpto(population);
+            checkpoints.add(measure());
+        }
+        return checkpoints;
+    }
+
+    private void setup() {
+        long measuredCalls = (long) scenario.getCheckpoints().length * scenario.getBlocksPerCheckpoint() * scenario.getCallsPerBlock();
+        BigInteger contractBalance = ONE_AION.multiply(scenario.getTopupAmount().add(BigInteger.ONE))
+                .multiply(BigInteger.valueOf(scenario.getRecipients() + measuredCalls))
+                .add(ONE_AION.multiply(BigInteger.valueOf(1000)));
+
+        harness.deploy(contractBalance);
+        owner = harness.getOwner();
+
+        operators = new Address[scenario.getOperators()];
+        for (int i = 0; i < operators.length; i++) {
+            operators[i] = harness.fundedAccount(FaucetHarness.GROUP_OPERATOR, scenario.getAddressOffset() + i);
+            harness.call(owner, "addOperator", operators[i]);
+        }
+
+        harness.call(owner, "setMinBlockDelay", scenario.getMinBlockDelay());
+        harness.call(owner, "setTopupAmount", scenario.getTopupAmount());
+    }
+
+    private void registerUpto(int population) {
+        while (registered < population) {
+            int size = Math.min(REGISTRATION_BATCH_SIZE, population - registered);
+            Address[] batch = new Address[size];
+            for (int i = 0; i < size; i++)
+                batch[i] = recipient(registered++);
+
+            harness.call(nextOperator(), "registerAddresses", (Object) batch);
+        }
+    }
+
+    private ScaleCheckpoint measure() {
+        ScaleCheckpoint checkpoint = new ScaleCheckpoint(scenario.getName(), registered);
+        int totalWeight = scenario.getRegisterWeight() + scenario.getTopUpWeight() + scenario.getCanRequestWeight();
+        String name = scenario.getName() + ".population" + checkpoint.getPopulation();
+
+        for (int block = 0; block < scenario.getBlocksPerCheckpoint(); block++) {
+            avmRule.kernel.generateBlock();
+
+            for (int call = 0; call < scenario.getCallsPerBlock(); call++) {
+                int pick = random.nextInt(totalWeight);
+
+                if (pick < scenario.getRegisterWeight()) {
+                    Address recipient = recipient(registered++);
+                    checkpoint.add(harness.measure(name, nextOperator(), "registerAddress", recipient));
+                } else if (pick < scenario.getRegisterWeight() + scenario.getTopUpWeight()) {
+                    Address recipient = recipient(random.nextInt(registered));
+                    checkpoint.add(harness.measure(name, recipient, "topUp"));
+                } else {
+                    Address recipient = recipient(random.nextInt(registered));
+                    checkpoint.add(harness.measure(name, owner, "canRequest", recipient));
+                }
+            }
+        }
+
+        long storageBytes = 0;
+        for (int i = 0; i < registered; i++)
+            storageBytes += harness.recipientRecordBytes(recipient(i));
+
+        checkpoint.setBlockNumber(avmRule.kernel.getBlockNumber());
+        checkpoint.setGraphBytes(harness.graphBytes());
+        checkpoint.setStorageBytes(storageBytes);
+        return checkpoint;
+    }
+
+    private Address recipient(int index) {
+        return FaucetHarness.account(FaucetHarness.GROUP_RECIPIENT, scenario.getAddressOffset() + index);
+    }
+
+    private Address nextOperator() {
+        Address operator = operators[nextOperator];
+        nextOperator = (nextOperator + 1) % operators.length;
+        return operator;
+    }
+}
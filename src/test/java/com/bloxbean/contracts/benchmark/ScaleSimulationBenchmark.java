@@ -0,0 +1,58 @@
+package com.bloxbean.contracts.benchmark;
+
+import org.aion.avm.embed.AvmRule;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Energy, latency and state size of AionFaucetContract as the recipient base grows. See {@link ScaleSimulation}.
+ * Not part of the default test run. Run with: mvn test -Pbenchmark
+ *
+ * System properties:
+ * benchmark.scale.recipients - final population (default: 100000)
+ * benchmark.scale.operators - no of operators (default: 10)
+ * benchmark.scale.output - output file without extension. Written as .csv and .json (default: target/benchmark/scale)
+ */
+public class ScaleSimulationBenchmark {
+
+    private static ScaleReport report = new ScaleReport();
+
+    @Rule
+    public AvmRule avmRule = new AvmRule(false);
+
+    @Test
+    public void simulateGrowingPopulation() {
+        ScaleScenario scenario = new ScaleScenario("scale",
+                Integer.getInteger("benchmark.scale.recipients", 100000),
+                Integer.getInteger("benchmark.scale.operators", 10));
+
+        List<ScaleCheckpoint> checkpoints = new ScaleSimulation(avmRule, scenario).run();
+        for (ScaleCheckpoint checkpoint : checkpoints) {
+            report.add(checkpoint);
+
+            //Reads and registrations of new addresses never fail. A topup can, if the recipient has no token left
+            OperationStats canRequest = checkpoint.getOperation("canRequest");
+            if (canRequest != null)
+                Assert.assertEquals(canRequest.getCalls(), canRequest.getSuccesses());
+            OperationStats register = checkpoint.getOperation("registerAddress");
+            if (register != null)
+                Assert.assertEquals(register.getCalls(), register.getSuccesses());
+        }
+    }
+
+    @AfterClass
+    public static void writeReport() throws IOException {
+        String output = System.getProperty("benchmark.scale.output", "target/benchmark/scale");
+        Path csv = Paths.get(output + ".csv");
+        report.writeCsv(csv);
+        report.writeJson(Paths.get(output + ".json"));
+        System.out.println("Scale simulation results written to " + csv.toAbsolutePath().getParent());
+    }
+}
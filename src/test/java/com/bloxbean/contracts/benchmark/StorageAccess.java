@@ -0,0 +1,60 @@
+package com.bloxbean.contracts.benchmark;
+
+/**
+ * A single state access of a transaction, recorded by {@link StorageTracer}
+ */
+public class StorageAccess {
+
+    public enum Kind {
+        STORAGE_READ,
+        STORAGE_WRITE,
+        STORAGE_DELETE,
+        GRAPH_READ,   //contract's static fields
+        GRAPH_WRITE,
+        BALANCE_READ,
+        TRANSFER,     //internal Blockchain.call with value, including failed ones. key is the amount
+        LOG           //bytes is the log data length, key the first topic
+    }
+
+    private final Kind kind;
+    private final String address;
+    private final String key;
+    private final int bytes;
+
+    public StorageAccess(Kind kind, String address, String key, int bytes) {
+        this.kind = kind;
+        this.address = address;
+        this.key = key;
+        this.bytes = bytes;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return hex address of the account accessed
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * @return hex storage key, or an empty string if the access has no key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return no of bytes read or written. 0 for a read of a missing key
+     */
+    public int getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + address + (key.isEmpty() ? "" : " " + key) + " " + bytes + " bytes";
+    }
+}
@@ -0,0 +1,92 @@
+package com.bloxbean.contracts.benchmark;
+
+import avm.Address;
+import com.bloxbean.contracts.AionFaucetContract;
+import org.aion.avm.embed.AvmRule;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Storage reads and writes, balance lookups, transfers and logs of AionFaucetContract's callables, recorded by
+ * {@link StorageTracer}. Not part of the default test run. Run with: mvn test -Pbenchmark
+ *
+ * System properties:
+ * benchmark.storage.output - output file without extension. Written as .csv and .json (default: target/benchmark/storage-access)
+ */
+public class StorageAccessBenchmark {
+    private static final int BATCH_SIZE = 10;
+
+    private static BigInteger contractBalance = new BigInteger("1000000000000000000000"); //1000 Aion
+
+    private static StorageAccessReport report = new StorageAccessReport();
+
+    @Rule
+    public AvmRule avmRule = new AvmRule(false);
+
+    private FaucetHarness harness;
+    private StorageTracer tracer;
+    private Address owner;
+    private Address dappAddr;
+
+    @Before
+    public void deployDapp() {
+        harness = new FaucetHarness(avmRule);
+        dappAddr = harness.deploy(contractBalance);
+        owner = harness.getOwner();
+        tracer = new StorageTracer(avmRule);
+    }
+
+    @Test
+    public void traceCallables() {
+        Address operator = harness.fundedAccount(FaucetHarness.GROUP_OPERATOR, 0);
+        trace(owner, "addOperator", operator);
+        harness.call(owner, "setMinBlockDelay", 1L);
+
+        Address recipient = harness.fundedAccount(FaucetHarness.GROUP_RECIPIENT, 0);
+        TransactionTrace register = trace(operator, "registerAddress", recipient);
+        Assert.assertTrue(register.count(StorageAccess.Kind.STORAGE_WRITE) > 0);
+        Assert.assertEquals(1, register.count(StorageAccess.Kind.TRANSFER));
+
+        Address[] batch = new Address[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++)
+            batch[i] = harness.fundedAccount(FaucetHarness.GROUP_RECIPIENT, i + 1);
+        trace(operator, "registerAddresses", (Object) batch);
+
+        avmRule.kernel.generateBlock();
+        TransactionTrace canRequest = trace(owner, "canRequest", recipient);
+        Assert.assertEquals(0, canRequest.count(StorageAccess.Kind.STORAGE_WRITE));
+
+        trace(recipient, "topUp");
+        avmRule.kernel.generateBlock();
+        trace(operator, "topUpAddresses", (Object) batch);
+
+        trace(owner, "getRecipientDetailsBatch", (Object) batch);
+        trace(owner, "getFaucetStats");
+        trace(owner, "rebalanceOperators", 0, AionFaucetContract.MAX_OPERATOR_PAGE_SIZE);
+    }
+
+    private TransactionTrace trace(Address caller, String method, Object... args) {
+        TransactionTrace trace = tracer.call(method, caller, dappAddr, method, args);
+        Assert.assertTrue(method + " failed", trace.isSuccess());
+        report.add(trace);
+        return trace;
+    }
+
+    @AfterClass
+    public static void writeReport() throws IOException {
+        String output = System.getProperty("benchmark.storage.output", "target/benchmark/storage-access");
+        Path csv = Paths.get(output + ".csv");
+        report.writeCsv(csv);
+        report.writeJson(Paths.get(output + ".json"));
+        System.out.println("Storage access report of " + report.getTraces().size() + " calls written to "
+                + csv.toAbsolutePath().getParent());
+    }
+}
@@ -0,0 +1,90 @@
+package com.bloxbean.contracts.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects {@link TransactionTrace}s and writes them as CSV, one row per access, or as JSON with per kind totals.
+ * Both formats are deterministic for the same contract and scenarios, so reports of two builds can be diffed.
+ */
+public class StorageAccessReport {
+    private final List<TransactionTrace> traces = new ArrayList<>();
+
+    public void add(TransactionTrace trace) {
+        traces.add(trace);
+    }
+
+    public List<TransactionTrace> getTraces() {
+        return traces;
+    }
+
+    public void writeCsv(Path file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("scenario,method,success,energyUsed,seq,kind,address,key,bytes\n");
+        for (TransactionTrace trace : traces) {
+            List<StorageAccess> accesses = trace.getAccesses();
+            for (int i = 0; i < accesses.size(); i++) {
+                StorageAccess access = accesses.get(i);
+                sb.append(trace.getScenario()).append(',')
+                        .append(trace.getMethod()).append(',')
+                        .append(trace.isSuccess()).append(',')
+                        .append(trace.getEnergyUsed()).append(',')
+                        .append(i).append(',')
+                        .append(access.getKind()).append(',')
+                        .append(access.getAddress()).append(',')
+                        .append(access.getKey()).append(',')
+                        .append(access.getBytes()).append('\n');
+            }
+        }
+
+        write(file, sb);
+    }
+
+    public void writeJson(Path file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[\n");
+        for (int i = 0; i < traces.size(); i++) {
+            TransactionTrace trace = traces.get(i);
+            sb.append("  {\"scenario\": \"").append(trace.getScenario()).append('"')
+                    .append(", \"method\": \"").append(trace.getMethod()).append('"')
+                    .append(", \"success\": ").append(trace.isSuccess())
+                    .append(", \"energyUsed\": ").append(trace.getEnergyUsed())
+                    .append(",\n   \"totals\": {");
+
+            StorageAccess.Kind[] kinds = StorageAccess.Kind.values();
+            for (int k = 0; k < kinds.length; k++) {
+                sb.append('"').append(kinds[k]).append("\": {\"count\": ").append(trace.count(kinds[k]))
+                        .append(", \"bytes\": ").append(trace.bytes(kinds[k])).append('}');
+                if (k < kinds.length - 1)
+                    sb.append(", ");
+            }
+            sb.append("},\n   \"accesses\": [");
+
+            List<StorageAccess> accesses = trace.getAccesses();
+            for (int a = 0; a < accesses.size(); a++) {
+                StorageAccess access = accesses.get(a);
+                sb.append("\n    {\"kind\": \"").append(access.getKind()).append('"')
+                        .append(", \"address\": \"").append(access.getAddress()).append('"')
+                        .append(", \"key\": \"").append(access.getKey()).append('"')
+                        .append(", \"bytes\": ").append(access.getBytes())
+                        .append('}');
+                if (a < accesses.size() - 1)
+                    sb.append(',');
+            }
+            sb.append("]}");
+            sb.append(i < traces.size() - 1 ? ",\n" : "\n");
+        }
+        sb.append("]\n");
+
+        write(file, sb);
+    }
+
+    private static void write(Path file, StringBuilder sb) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,184 @@
+package com.bloxbean.contracts.benchmark;
+
+import avm.Address;
+import org.aion.avm.core.ExecutionType;
+import org.aion.avm.core.IExternalState;
+import org.aion.avm.embed.AvmRule;
+import org.aion.avm.tooling.ABIUtil;
+import org.aion.types.AionAddress;
+import org.aion.types.InternalTransaction;
+import org.aion.types.Log;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs contract calls on the {@link AvmRule}'s AVM against a proxy of its kernel, and records each storage access,
+ * balance lookup, internal transfer and log of the call.
+ *
+ * The AVM executes a transaction on a child state of the kernel and commits it back at the end, and internal calls
+ * do the same on a child of the transaction's state. Child states are proxied as well, so every read and write
+ * of the contract is seen. Writes replayed into a parent by a commit are not recorded again, and neither are
+ * accesses on the kernel itself, which only receives committed state.
+ * Lookups done by the AVM itself, e.g. the caller's balance and the contract's code, are included.
+ */
+public class StorageTracer {
+    private static final long ENERGY_LIMIT = FaucetHarness.ENERGY_LIMIT;
+    private static final long ENERGY_PRICE = FaucetHarness.ENERGY_PRICE;
+
+    private final AvmRule avmRule;
+    private final IExternalState tracedKernel;
+
+    private final List<StorageAccess> accesses = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean recording;
+    private volatile int commitDepth;
+    private long txCount;
+
+    public StorageTracer(AvmRule avmRule) {
+        this.avmRule = avmRule;
+        this.tracedKernel = (IExternalState) wrap(avmRule.kernel, 0);
+    }
+
+    /**
+     * Call a method through the traced kernel. The call changes the kernel's state the same way as
+     * {@link AvmRule#call(Address, Address, BigInteger, byte[], long, long)}.
+     * @param scenario name of the scenario this trace belongs to
+     * @param caller
+     * @param dappAddress
+     * @param method
+     * @param args
+     * @return trace of the call
+     */
+    public TransactionTrace call(String scenario, Address caller, Address dappAddress, String method, Object... args) {
+        AionAddress sender = new AionAddress(caller.toByteArray());
+        byte[] txData = ABIUtil.encodeMethodArguments(method, args);
+        Transaction tx = Transaction.contractCallTransaction(sender, new AionAddress(dappAddress.toByteArray()),
+                transactionHash(), avmRule.kernel.getNonce(sender), BigInteger.ZERO, txData, ENERGY_LIMIT, ENERGY_PRICE);
+
+        accesses.clear();
+        recording = true;
+        TransactionResult result;
+        try {
+            result = avmRule.avm.run(tracedKernel, new Transaction[]{tx}, ExecutionType.ASSUME_MAINCHAIN,
+                    avmRule.kernel.getBlockNumber() - 1)[0].getResult();
+        } finally {
+            recording = false;
+        }
+
+        List<StorageAccess> trace = new ArrayList<>(accesses);
+        for (InternalTransaction internalTx : result.internalTransactions) {
+            if (internalTx.value.signum() > 0)
+                trace.add(new StorageAccess(StorageAccess.Kind.TRANSFER, toHex(internalTx.destination.toByteArray()),
+                        internalTx.value.toString(), internalTx.value.toByteArray().length));
+        }
+        for (Log log : result.logs) {
+            List<byte[]> topics = log.copyOfTopics();
+            trace.add(new StorageAccess(StorageAccess.Kind.LOG, toHex(log.copyOfAddress()),
+                    topics.isEmpty() ? "" : toHex(topics.get(0)), log.copyOfData().length));
+        }
+
+        return new TransactionTrace(scenario, method, result.transactionStatus.isSuccess(), result.energyUsed, trace);
+    }
+
+    private Object wrap(Object state, int depth) {
+        Set<Class<?>> interfaces = new LinkedHashSet<>();
+        for (Class<?> type = state.getClass(); type != null; type = type.getSuperclass())
+            Collections.addAll(interfaces, type.getInterfaces());
+
+        return Proxy.newProxyInstance(StorageTracer.class.getClassLoader(), interfaces.toArray(new Class<?>[0]),
+                new StateHandler(state, depth));
+    }
+
+    private class StateHandler implements InvocationHandler {
+        private final Object target;
+        private final int depth;
+
+        StateHandler(Object target, int depth) {
+            this.target = target;
+            this.depth = depth;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            boolean commit = name.startsWith("commit");
+            if (commit)
+                commitDepth++;
+
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (commit)
+                    commitDepth--;
+            }
+
+            if ("newChildExternalState".equals(name))
+                return wrap(result, depth + 1);
+
+            if (recording && depth > 0 && commitDepth == 0)
+                record(name, args, result);
+
+            return result;
+        }
+    }
+
+    private void record(String name, Object[] args, Object result) {
+        switch (name) {
+            case "getStorage":
+                accesses.add(new StorageAccess(StorageAccess.Kind.STORAGE_READ, address(args[0]), toHex((byte[]) args[1]), length(result)));
+                break;
+            case "putStorage":
+                accesses.add(new StorageAccess(StorageAccess.Kind.STORAGE_WRITE, address(args[0]), toHex((byte[]) args[1]), length(args[2])));
+                break;
+            case "removeStorage":
+                accesses.add(new StorageAccess(StorageAccess.Kind.STORAGE_DELETE, address(args[0]), toHex((byte[]) args[1]), 0));
+                break;
+            case "getObjectGraph":
+                accesses.add(new StorageAccess(StorageAccess.Kind.GRAPH_READ, address(args[0]), "", length(result)));
+                break;
+            case "putObjectGraph":
+                accesses.add(new StorageAccess(StorageAccess.Kind.GRAPH_WRITE, address(args[0]), "", length(args[1])));
+                break;
+            case "getBalance":
+                accesses.add(new StorageAccess(StorageAccess.Kind.BALANCE_READ, address(args[0]), "", 0));
+                break;
+            default:
+        }
+    }
+
+    private byte[] transactionHash() {
+        byte[] hash = new byte[32];
+        long n = ++txCount;
+        for (int i = 0; i < Long.BYTES; i++)
+            hash[31 - i] = (byte) (n >>> (8 * i));
+        return hash;
+    }
+
+    private static int length(Object bytes) {
+        return bytes instanceof byte[] ? ((byte[]) bytes).length : 0;
+    }
+
+    private static String address(Object address) {
+        return toHex(((AionAddress) address).toByteArray());
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package com.bloxbean.contracts.benchmark;
+
+import avm.Address;
+import com.bloxbean.contracts.StringUtil;
+import org.aion.avm.embed.AvmRule;
+import org.aion.avm.tooling.ABIUtil;
+import org.aion.avm.userlib.AionList;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Energy of tokenizing long comma separated address lists with {@link StringUtil} against the previous quadratic splits.
+ * Not part of the default test run. Run with: mvn test -Pbenchmark
+ *
+ * System properties:
+ * benchmark.tokenizer.output - JSON result file (default: target/benchmark/tokenizer-results.json)
+ */
+public class TokenizerBenchmark {
+    private static final int[] ADDRESS_COUNTS = {10, 100, 300, 500};
+    private static final long ENERGY_LIMIT = 20_000_000L;
+
+    private static BenchmarkReport report = new BenchmarkReport();
+
+    @Rule
+    public AvmRule avmRule = new AvmRule(false);
+
+    private Address caller;
+    private Address dappAddr;
+
+    @Before
+    public void deployDapp() {
+        caller = avmRule.getPreminedAccount();
+        byte[] dapp = avmRule.getDappBytes(TokenizerBenchmarkContract.class, null, 1, StringUtil.class,
+                StringUtil.TokenVisitor.class, TokenizerBenchmarkContract.AddressCounter.class, AionList.class);
+        dappAddr = avmRule.deploy(caller, BigInteger.ZERO, dapp).getDappAddress();
+    }
+
+    @Test
+    public void benchmarkTokenizers() {
+        for (int addressCount : ADDRESS_COUNTS) {
+            String addresses = addressList(addressCount);
+            String suffix = ".addresses" + addressCount;
+
+            Measurement legacy = measure("splitLegacy" + suffix, "splitLegacy", addresses, addressCount);
+            Measurement splits = measure("splitSinglePass" + suffix, "splitSinglePass", addresses, addressCount);
+            Measurement offsets = measure("tokenOffsets" + suffix, "tokenOffsets", addresses, addressCount);
+            Measurement visitor = measure("forEachToken" + suffix, "forEachToken", addresses, addressCount);
+
+            Assert.assertTrue(splits.getScenario() + " failed", splits.isSuccess());
+            Assert.assertTrue(offsets.getScenario() + " failed", offsets.isSuccess());
+            Assert.assertTrue(visitor.getScenario() + " failed", visitor.isSuccess());
+
+            //The legacy splits may run out of energy on the longest inputs
+            if (legacy.isSuccess())
+                Assert.assertTrue(splits.getScenario() + " uses more energy than legacy",
+                        splits.getEnergyUsed() <= legacy.getEnergyUsed());
+        }
+    }
+
+    private Measurement measure(String scenario, String method, String addresses, int expectedCount) {
+        byte[] txData = ABIUtil.encodeMethodArguments(method, addresses);
+        long start = System.nanoTime();
+        AvmRule.ResultWrapper result = avmRule.call(caller, dappAddr, BigInteger.ZERO, txData, ENERGY_LIMIT, FaucetHarness.ENERGY_PRICE);
+        long latency = System.nanoTime() - start;
+
+        boolean success = result.getReceiptStatus().isSuccess();
+        if (success)
+            Assert.assertEquals(scenario, expectedCount, result.getDecodedReturnData());
+
+        Measurement measurement = new Measurement(scenario, method, success,
+                result.getTransactionResult().energyUsed, latency, 0);
+        report.add(measurement);
+        return measurement;
+    }
+
+    private static String addressList(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0)
+                sb.append(',');
+
+            sb.append("0x");
+            for (byte b : FaucetHarness.account(FaucetHarness.GROUP_RECIPIENT, i).toByteArray())
+                sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    @AfterClass
+    public static void writeReport() throws IOException {
+        Path output = Paths.get(System.getProperty("benchmark.tokenizer.output", "target/benchmark/tokenizer-results.json"));
+        report.writeJson(output);
+        System.out.println("Benchmark results written to " + output.toAbsolutePath());
+    }
+}
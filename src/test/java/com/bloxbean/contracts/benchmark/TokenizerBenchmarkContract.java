@@ -0,0 +1,105 @@
+package com.bloxbean.contracts.benchmark;
+
+import avm.Address;
+import com.bloxbean.contracts.StringUtil;
+import org.aion.avm.tooling.abi.Callable;
+import org.aion.avm.userlib.AionList;
+
+import java.util.List;
+
+/**
+ * Benchmark only dapp to compare the energy of {@link StringUtil}'s tokenizer with the previous implementation.
+ * Each method tokenizes a comma separated list of hex addresses and returns the no of valid addresses.
+ */
+public class TokenizerBenchmarkContract {
+
+    private static final char DELIMITER = ',';
+
+    @Callable
+    public static int splitLegacy(String addresses) {
+        return countAddresses(legacySplits(addresses, DELIMITER));
+    }
+
+    @Callable
+    public static int splitSinglePass(String addresses) {
+        return countAddresses(StringUtil.splits(addresses, DELIMITER));
+    }
+
+    @Callable
+    public static int tokenOffsets(String addresses) {
+        int[] offsets = StringUtil.tokenOffsets(addresses, DELIMITER);
+        int count = 0;
+        for (int i = 0; i < offsets.length; i += 2) {
+            if (isAddress(addresses, offsets[i], offsets[i + 1]))
+                count++;
+        }
+        return count;
+    }
+
+    @Callable
+    public static int forEachToken(String addresses) {
+        AddressCounter counter = new AddressCounter();
+        StringUtil.forEachToken(addresses, DELIMITER, counter);
+        return counter.count;
+    }
+
+    private static int countAddresses(String[] tokens) {
+        int count = 0;
+        for (String token : tokens) {
+            if (isAddress(token, 0, token.length()))
+                count++;
+        }
+        return count;
+    }
+
+    private static boolean isAddress(String str, int start, int end) {
+        return end - start == 2 + 2 * Address.LENGTH && str.charAt(start) == '0' && str.charAt(start + 1) == 'x';
+    }
+
+    /**
+     * StringUtil.splits before the single pass tokenizer
+     */
+    private static String[] legacySplits(String str, char delimeter) {
+        List<String> tokens = new AionList<>();
+        int i = str.indexOf(delimeter);
+
+        if(i == -1)
+            return new String[]{str};
+
+        while (i != -1) {
+            String token = str.substring(0, i);
+            tokens.add(token);
+
+            if(str.length() > i + 1) {
+                str = str.substring(i + 1);
+
+                i = str.indexOf(delimeter);
+
+                if(i == -1) {
+                    tokens.add(str);
+                }
+            } else {
+                i = -1;
+            }
+        }
+
+        int length = tokens.size();
+        String[] retList = new String[length];
+
+        i = 0;
+        for(String token: tokens) {
+            retList[i++] = token;
+        }
+        return retList;
+    }
+
+    static class AddressCounter implements StringUtil.TokenVisitor {
+        private int count;
+
+        @Override
+        public void visit(String str, int index, int start, int end) {
+            if (isAddress(str, start, end))
+                count++;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.bloxbean.contracts.benchmark;
+
+import java.util.List;
+
+/**
+ * State accesses of one contract call, in the order they happened
+ */
+public class TransactionTrace {
+    private final String scenario;
+    private final String method;
+    private final boolean success;
+    private final long energyUsed;
+    private final List<StorageAccess> accesses;
+
+    public TransactionTrace(String scenario, String method, boolean success, long energyUsed, List<StorageAccess> accesses) {
+        this.scenario = scenario;
+        this.method = method;
+        this.success = success;
+        this.energyUsed = energyUsed;
+        this.accesses = accesses;
+    }
+
+    public String getScenario() {
+        return scenario;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public long getEnergyUsed() {
+        return energyUsed;
+    }
+
+    public List<StorageAccess> getAccesses() {
+        return accesses;
+    }
+
+    public int count(StorageAccess.Kind kind) {
+        int count = 0;
+        for (StorageAccess access : accesses) {
+            if (access.getKind() == kind)
+                count++;
+        }
+        return count;
+    }
+
+    public long bytes(StorageAccess.Kind kind) {
+        long bytes = 0;
+        for (StorageAccess access : accesses) {
+            if (access.getKind() == kind)
+                bytes += access.getBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("TransactionTrace{scenario='").append(scenario).append('\'')
+                .append(", method='").append(method).append('\'')
+                .append(", success=").append(success)
+                .append(", energyUsed=").append(energyUsed);
+        for (StorageAccess.Kind kind : StorageAccess.Kind.values()) {
+            int count = count(kind);
+            if (count > 0)
+                sb.append(", ").append(kind).append('=').append(count).append('/').append(bytes(kind)).append('B');
+        }
+        return sb.append('}').toString();
+    }
+}